@@ -0,0 +1,54 @@
+package searchengine.benchmark;
+
+import searchengine.services.crawler.HtmlScanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сохранённые страницы из resources/corpus: список файлов - в pages.txt, адрес страницы - в первой строке файла
+ * в виде комментария {@code <!-- url: ... -->}. Текст страниц извлекается один раз при загрузке.
+ */
+final class Corpus {
+    private static final String ROOT = "/corpus/";
+    private static final String URL_PREFIX = "<!-- url: ";
+
+    record Page(String url, String html, String text) {
+    }
+
+    private Corpus() {
+    }
+
+    static List<Page> load() {
+        List<Page> pages = new ArrayList<>();
+        for (String name : read("pages.txt").split("\\R")) {
+            if (name.isBlank() || name.startsWith("#")) {
+                continue;
+            }
+            String html = read(name.trim());
+            String url = html.startsWith(URL_PREFIX)
+                    ? html.substring(URL_PREFIX.length(), html.indexOf(" -->")).trim()
+                    : "https://example.ru/" + name.trim();
+            pages.add(new Page(url, html, HtmlScanner.scan(html, url).text()));
+        }
+        if (pages.isEmpty()) {
+            throw new IllegalStateException("Корпус " + ROOT + " пуст");
+        }
+        return pages;
+    }
+
+    private static String read(String name) {
+        try (InputStream in = Corpus.class.getResourceAsStream(ROOT + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Не найден файл корпуса " + ROOT + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package searchengine.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.Application;
+import searchengine.dto.indexing.IndexingJobStatus;
+import searchengine.repository.PageEntityRepository;
+import searchengine.services.abstracts.IndexingService;
+import searchengine.services.crawler.IndexingJob;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сквозной замер индексации без сети: полный путь startIndexing - загрузка, разбор, лемматизация и запись -
+ * по синтетическому сайту {@link MockSite} в H2 в режиме совместимости с MySQL.
+ * Для каждого прогона печатаются страниц в секунду, обращений к базе на страницу и пик занятой кучи.
+ * Перед каждым прогоном таблицы очищаются вне замера, так что все прогоны начинаются с пустой базы.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec@crawl -Dcrawl.args="--pages=5000 --latency-ms=20 \
+ *     --crawler-settings.workers-per-site=16 --search-engine.flush-rows=5000"
+ * </pre>
+ * Параметры сайта: --pages, --fan-out, --page-bytes, --latency-ms; --runs - число прогонов (первый - разминка).
+ * Остальные аргументы --ключ=значение передаются Spring и переопределяют настройки приложения,
+ * в том числе spring.datasource.* для прогона на настоящей MySQL. Начальные -- можно не писать.
+ */
+@Slf4j
+public final class CrawlBenchmark {
+    private static final long POLL_MS = 20;
+    private static final String[] TABLES = {"index_page", "page_content", "lemma", "page", "site"};
+
+    private CrawlBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(Map.of(
+                "pages", "2000", "fan-out", "10", "page-bytes", "8192", "latency-ms", "5", "runs", "3"));
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.main.web-application-type", WebApplicationType.NONE.name().toLowerCase());
+        properties.put("spring.datasource.url",
+                "jdbc:h2:mem:crawl;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("crawler-settings.host-delay-ms", "0");
+        properties.put("index-settings.segments-dir", Files.createTempDirectory("crawl-bench").toString());
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            String value = pair.length == 2 ? pair[1] : "true";
+            (options.containsKey(pair[0]) ? options : properties).put(pair[0], value);
+        }
+
+        int pages = Integer.parseInt(options.get("pages"));
+        try (MockSite site = new MockSite(pages, Integer.parseInt(options.get("fan-out")),
+                Integer.parseInt(options.get("page-bytes")), Integer.parseInt(options.get("latency-ms")))) {
+            properties.put("indexing-settings.sites[0].url", site.url());
+            properties.put("indexing-settings.sites[0].name", "Синтетический сайт");
+            log.info("Сайт {}: {}", site.url(), options);
+
+            StatementCounter statementCounter = new StatementCounter();
+            SpringApplication application = new SpringApplication(Application.class);
+            application.addInitializers(context -> context.getBeanFactory().addBeanPostProcessor(statementCounter));
+            ConfigurableApplicationContext context = application.run(toArgs(properties));
+            try {
+                IndexingService indexingService = context.getBean(IndexingService.class);
+                JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+                PageEntityRepository pageEntityRepository = context.getBean(PageEntityRepository.class);
+                int runs = Integer.parseInt(options.get("runs"));
+                List<Double> pagesPerSecond = new ArrayList<>();
+                for (int run = 1; run <= runs; run++) {
+                    for (String table : TABLES) {
+                        jdbcTemplate.update("DELETE FROM " + table);
+                    }
+                    statementCounter.reset();
+                    System.gc();
+                    HeapSampler heap = HeapSampler.start();
+                    long started = System.nanoTime();
+                    IndexingJob.State state = crawl(indexingService);
+                    double seconds = (System.nanoTime() - started) / 1e9;
+                    long heapPeak = heap.stop();
+                    long indexed = pageEntityRepository.count();
+                    double rate = indexed / seconds;
+                    if (run > 1 || runs == 1) {
+                        pagesPerSecond.add(rate);
+                    }
+                    log.info(String.format("Прогон %d%s: %s, %d страниц за %.2f с - %.1f стр/с, " +
+                                    "%.1f обращений к базе и %.1f строк пакетов на страницу, пик кучи %d МБ",
+                            run, run == 1 && runs > 1 ? " (разминка)" : "", state, indexed, seconds, rate,
+                            (double) statementCounter.executions() / Math.max(1, indexed),
+                            (double) statementCounter.batchedRows() / Math.max(1, indexed),
+                            heapPeak >> 20));
+                }
+                double[] sorted = pagesPerSecond.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+                log.info(String.format("Медиана: %.1f стр/с по %d прогонам, запросов к сайту всего %d",
+                        sorted[sorted.length / 2], sorted.length, site.requests()));
+            } finally {
+                // пулы потоков индексации не демоны и не дали бы JVM завершиться
+                System.exit(SpringApplication.exit(context));
+            }
+        }
+    }
+
+    private static IndexingJob.State crawl(IndexingService indexingService) throws InterruptedException {
+        Object started = indexingService.startIndexing();
+        if (!(started instanceof IndexingJobStatus status)) {
+            throw new IllegalStateException("Индексация не запущена");
+        }
+        while (true) {
+            TimeUnit.MILLISECONDS.sleep(POLL_MS);
+            IndexingJobStatus current = (IndexingJobStatus) indexingService.getIndexingJob(status.getJobId());
+            if (current.getState() != IndexingJob.State.RUNNING && current.getState() != IndexingJob.State.CANCELLING) {
+                if (current.getError() != null) {
+                    log.warn("Ошибка индексации: {}", current.getError());
+                }
+                return current.getState();
+            }
+        }
+    }
+
+    private static String[] toArgs(Map<String, String> properties) {
+        return properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Пик занятой кучи по замерам каждые несколько миллисекунд в отдельном потоке.
+     */
+    private static final class HeapSampler {
+        private static final long SAMPLE_MS = 5;
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private final Thread thread = Thread.ofPlatform().daemon().name("heap-sampler").unstarted(this::sample);
+
+        static HeapSampler start() {
+            HeapSampler sampler = new HeapSampler();
+            sampler.thread.start();
+            return sampler;
+        }
+
+        long stop() throws InterruptedException {
+            thread.interrupt();
+            thread.join();
+            return peak.get();
+        }
+
+        private void sample() {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(SAMPLE_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.services.LemmaServiceImpl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Леммы текста страницы - основная работа стадии лемматизации при индексации.
+ * Кэш морфологии прогревается на разминке, как и на долгом обходе сайта, поэтому измеряется
+ * разбор на слова, подсчёт словоформ и обращения к кэшу, а не сама морфология.
+ * Репозитории сервису не нужны: измеряемые методы к базе не обращаются.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LemmaBenchmark {
+    private List<Corpus.Page> pages;
+    private LemmaServiceImpl lemmaService;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        pages = Corpus.load();
+        lemmaService = new LemmaServiceImpl(null, Morphology.newCache(), null);
+    }
+
+    @Benchmark
+    public Map<String, Integer> lemmasAndCount() {
+        return lemmaService.lemmasAndCount(nextPage().text());
+    }
+
+    @Benchmark
+    public String[] arrayContainsRussianWords() {
+        return lemmaService.arrayContainsRussianWords(nextPage().text());
+    }
+
+    private Corpus.Page nextPage() {
+        Corpus.Page page = pages.get(next);
+        next = (next + 1) % pages.size();
+        return page;
+    }
+}
@@ -0,0 +1,74 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.services.crawler.HtmlScanner;
+import searchengine.services.crawler.UrlNormalizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор загруженной страницы на стадии parse: ссылки, заголовок и текст за один проход {@link HtmlScanner}
+ * и нормализация ссылок. Для сравнения - прежний путь через DOM jsoup.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LinkExtractionBenchmark {
+    private List<Corpus.Page> pages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        pages = Corpus.load();
+    }
+
+    @Benchmark
+    public void htmlScanner(Blackhole blackhole) {
+        Corpus.Page page = nextPage();
+        HtmlScanner.Result result = HtmlScanner.scan(page.html(), page.url());
+        List<String> links = new ArrayList<>(result.links().size());
+        for (String link : result.links()) {
+            links.add(UrlNormalizer.normalize(link));
+        }
+        blackhole.consume(result.title());
+        blackhole.consume(result.text());
+        blackhole.consume(links);
+    }
+
+    @Benchmark
+    public void jsoupBaseline(Blackhole blackhole) {
+        Corpus.Page page = nextPage();
+        Document document = Jsoup.parse(page.html(), page.url());
+        List<String> links = new ArrayList<>();
+        for (Element anchor : document.select("a[href]")) {
+            links.add(UrlNormalizer.normalize(anchor.absUrl("href")));
+        }
+        blackhole.consume(document.title());
+        blackhole.consume(document.text());
+        blackhole.consume(links);
+    }
+
+    private Corpus.Page nextPage() {
+        Corpus.Page page = pages.get(next);
+        next = (next + 1) % pages.size();
+        return page;
+    }
+}
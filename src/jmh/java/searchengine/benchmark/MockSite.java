@@ -0,0 +1,141 @@
+package searchengine.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Синтетический сайт на встроенном HTTP-сервере: страницы 0..pages-1 по адресам / и /p/{n}.
+ * Каждая страница ссылается на следующую (так достижимы все страницы) и ещё на fanOut - 1 случайных,
+ * текст набирается из слов корпуса до pageBytes байт. Страницы генерируются при запросе из номера страницы,
+ * поэтому ответы повторяемы и не занимают память между запросами.
+ * Каждый ответ задерживается на latencyMs; запросы обслуживаются виртуальными потоками.
+ */
+final class MockSite implements AutoCloseable {
+    private static final Pattern WORD = Pattern.compile("[а-яё]{3,}");
+    private static final int WORDS_PER_PARAGRAPH = 60;
+
+    private final int pages;
+    private final int fanOut;
+    private final int pageBytes;
+    private final int latencyMs;
+    private final String[] words;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong requests = new AtomicLong();
+
+    MockSite(int pages, int fanOut, int pageBytes, int latencyMs) throws IOException {
+        this.pages = pages;
+        this.fanOut = Math.max(1, fanOut);
+        this.pageBytes = pageBytes;
+        this.latencyMs = latencyMs;
+        this.words = vocabulary();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            int page = pageNumber(exchange.getRequestURI().getPath());
+            if (page < 0) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = render(page).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int pageNumber(String path) {
+        if (path.equals("/")) {
+            return 0;
+        }
+        if (!path.startsWith("/p/")) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(path.substring(3));
+            return page > 0 && page < pages ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String render(int page) {
+        SplittableRandom random = new SplittableRandom(page);
+        StringBuilder html = new StringBuilder(pageBytes + 1024)
+                .append("<!DOCTYPE html><html lang=\"ru\"><head><meta charset=\"utf-8\"><title>Страница ")
+                .append(page).append(' ').append(words[random.nextInt(words.length)])
+                .append("</title></head><body><nav>");
+        Set<Integer> links = new LinkedHashSet<>();
+        links.add((page + 1) % pages);
+        while (links.size() < Math.min(fanOut, pages)) {
+            links.add(random.nextInt(pages));
+        }
+        for (int link : links) {
+            html.append("<a href=\"").append(link == 0 ? "/" : "/p/" + link).append("\">")
+                    .append(words[random.nextInt(words.length)]).append("</a> ");
+        }
+        html.append("</nav><main>");
+        // байты, а не символы: кириллица в UTF-8 занимает по два байта
+        int bytes = html.length() * 2;
+        while (bytes < pageBytes) {
+            html.append("<p>");
+            for (int i = 0; i < WORDS_PER_PARAGRAPH && bytes < pageBytes; i++) {
+                String word = words[random.nextInt(words.length)];
+                html.append(word).append(' ');
+                bytes += word.length() * 2 + 1;
+            }
+            html.append("</p>");
+        }
+        return html.append("</main></body></html>").toString();
+    }
+
+    /**
+     * Русские слова текстов корпуса - чтобы морфология разбирала настоящие словоформы.
+     */
+    private static String[] vocabulary() {
+        Set<String> vocabulary = new LinkedHashSet<>();
+        for (Corpus.Page page : Corpus.load()) {
+            WORD.matcher(page.text().toLowerCase()).results().forEach(match -> vocabulary.add(match.group()));
+        }
+        return vocabulary.toArray(String[]::new);
+    }
+}
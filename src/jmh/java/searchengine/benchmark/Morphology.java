@@ -0,0 +1,28 @@
+package searchengine.benchmark;
+
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import searchengine.config.MorphologySettings;
+import searchengine.services.morphology.MorphologyCache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Кэш морфологии с настройками по умолчанию, как в приложении, но без контекста Spring.
+ */
+final class Morphology {
+    private Morphology() {
+    }
+
+    static MorphologyCache newCache() {
+        try {
+            return new MorphologyCache(new RussianLuceneMorphology(),
+                    new DefaultListableBeanFactory().getBeanProvider(EnglishLuceneMorphology.class),
+                    new MorphologySettings());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.services.LemmaServiceImpl;
+import searchengine.services.SearchServiceImpl;
+import searchengine.services.morphology.MorphologyCache;
+import searchengine.services.snippet.SnippetBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сниппет по тексту страницы для каждой страницы выдачи. Запрос к странице - одна из самых частых
+ * её лемм и одна из средних по частоте, как у типичного запроса из двух слов.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SnippetBenchmark {
+    private List<Corpus.Page> pages;
+    private List<Set<String>> queries;
+    private SearchServiceImpl searchService;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        pages = Corpus.load();
+        MorphologyCache morphologyCache = Morphology.newCache();
+        LemmaServiceImpl lemmaService = new LemmaServiceImpl(null, morphologyCache, null);
+        searchService = new SearchServiceImpl(new SnippetBuilder(morphologyCache), lemmaService,
+                null, null, null, null, null, null, null, null, null, null);
+        queries = new ArrayList<>();
+        for (Corpus.Page page : pages) {
+            List<String> byFrequency = lemmaService.lemmasAndCount(page.text()).entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .map(Map.Entry::getKey)
+                    .toList();
+            Set<String> query = new LinkedHashSet<>();
+            query.add(byFrequency.get(0));
+            query.add(byFrequency.get(byFrequency.size() / 2));
+            queries.add(query);
+        }
+    }
+
+    @Benchmark
+    public String getSnippet() {
+        int page = next;
+        next = (next + 1) % pages.size();
+        return searchService.getSnippet(pages.get(page).text(), queries.get(page));
+    }
+}
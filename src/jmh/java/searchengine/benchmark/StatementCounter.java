@@ -0,0 +1,83 @@
+package searchengine.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Оборачивает DataSource контекста и считает обращения к базе: выполнения запросов и пакетов
+ * (executeBatch считается одним обращением) и строки, добавленные в пакеты. Считаются и запросы Hibernate,
+ * и JdbcTemplate - оба берут соединения из одного пула.
+ */
+final class StatementCounter implements BeanPostProcessor {
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong batchedRows = new AtomicLong();
+
+    long executions() {
+        return executions.get();
+    }
+
+    long batchedRows() {
+        return batchedRows.get();
+    }
+
+    void reset() {
+        executions.set(0);
+        batchedRows.set(0);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource dataSource ? proxy(DataSource.class, dataSource) : bean;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            count(method.getName());
+            if (result instanceof Connection connection) {
+                return proxy(Connection.class, connection);
+            }
+            if (result instanceof Statement statement && !(target instanceof Statement)) {
+                return proxy(interfaceOf(statement), statement);
+            }
+            return result;
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private void count(String method) {
+        if (method.equals("addBatch")) {
+            batchedRows.incrementAndGet();
+        } else if (method.startsWith("execute")) {
+            executions.incrementAndGet();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Statement> Class<T> interfaceOf(Statement statement) {
+        if (statement instanceof java.sql.CallableStatement) {
+            return (Class<T>) java.sql.CallableStatement.class;
+        }
+        if (statement instanceof java.sql.PreparedStatement) {
+            return (Class<T>) java.sql.PreparedStatement.class;
+        }
+        return (Class<T>) Statement.class;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
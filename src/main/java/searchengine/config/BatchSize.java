@@ -6,6 +6,7 @@ import org.springframework.context.annotation.Configuration;
 @ConfigurationProperties(prefix = "search-engine")
 public class BatchSize {
     private int batchSize;
+    private int flushRows = 2000;
 
     public int getBatchSize() {
         return batchSize;
@@ -14,4 +15,11 @@ public class BatchSize {
         this.batchSize = batchSize;
     }
 
+    public int getFlushRows() {
+        return flushRows;
+    }
+    public void setFlushRows(int flushRows) {
+        this.flushRows = flushRows;
+    }
+
 }
@@ -0,0 +1,26 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "content-settings")
+public class ContentSettings {
+    /**
+     * Чем сжимать HTML и текст страниц. Кодек пишется в каждую строку,
+     * поэтому смена настройки не мешает читать уже сохранённые страницы.
+     */
+    private Codec codec = Codec.DEFLATE;
+    /**
+     * Уровень сжатия Deflate: 1 - быстрее, 9 - плотнее.
+     */
+    private int level = 5;
+
+    public enum Codec {
+        NONE, DEFLATE
+    }
+}
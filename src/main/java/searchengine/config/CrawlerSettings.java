@@ -0,0 +1,113 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "crawler-settings")
+public class CrawlerSettings {
+    /**
+     * Сколько сайтов обходится одновременно.
+     */
+    private int sitesParallelism = 5;
+    /**
+     * Количество потоков загрузки страниц на один сайт.
+     */
+    private int workersPerSite = 8;
+    /**
+     * Максимум одновременных запросов к одному хосту.
+     */
+    private int maxConnectionsPerHost = 4;
+    /**
+     * Минимальная пауза между началом двух запросов к одному хосту.
+     */
+    private long hostDelayMs = 150;
+    /**
+     * PLATFORM - фиксированный пул из workersPerSite потоков на сайт,
+     * VIRTUAL - отдельный виртуальный поток на каждую страницу.
+     */
+    private Executor executor = Executor.PLATFORM;
+    /**
+     * Общий предел одновременно обрабатываемых страниц в режиме VIRTUAL.
+     */
+    private int maxInFlight = 1000;
+    /**
+     * Таймаут соединения и ответа при загрузке страницы.
+     */
+    private int fetchTimeoutMs = 15_000;
+    /**
+     * Страницы с телом больше этого размера (после распаковки) не загружаются.
+     */
+    private long maxBodyBytes = 5 * 1024 * 1024;
+    /**
+     * Типы содержимого, которые загружаются и разбираются как HTML; остальные ответы обрываются после заголовков.
+     */
+    private List<String> htmlContentTypes = List.of("text/html", "application/xhtml+xml");
+    /**
+     * Сколько stopIndexing ждёт завершения всех потоков задания.
+     */
+    private long stopTimeoutMs = 20_000;
+    private Pipeline pipeline = new Pipeline();
+    private Sitemap sitemap = new Sitemap();
+    /**
+     * Повторный обход без очистки базы: страницы запрашиваются условно (If-None-Match / If-Modified-Since),
+     * неизменённые пропускаются, у изменённых переписывается только разница лемм и индексов.
+     */
+    private boolean incremental = false;
+    /**
+     * С какого числа посещённых ссылок сайта точное множество хэшей заменяется фильтром Блума; 0 - никогда.
+     */
+    private long visitedBloomThreshold = 2_000_000;
+    /**
+     * На сколько ссылок рассчитан фильтр Блума.
+     */
+    private long visitedBloomCapacity = 20_000_000;
+    private double visitedBloomFalsePositiveRate = 0.001;
+
+    public enum Executor {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    /**
+     * Размеры стадий конвейера после загрузки страницы.
+     */
+    @Getter
+    @Setter
+    public static class Pipeline {
+        private int parseThreads = 2;
+        private int lemmaThreads = 2;
+        /**
+         * Частоты лемм обновляются атомарным upsert, поэтому писателей может быть несколько.
+         */
+        private int writerThreads = 1;
+        private int queueCapacity = 200;
+    }
+
+    /**
+     * Начальное заполнение очереди из sitemap, перечисленных в robots.txt (или /sitemap.xml, если их там нет).
+     */
+    @Getter
+    @Setter
+    public static class Sitemap {
+        private boolean enabled = true;
+        /**
+         * Сколько файлов sitemap (включая вложенные в индекс) читается на один сайт.
+         */
+        private int maxFiles = 50;
+        /**
+         * Сколько ссылок из sitemap ставится в очередь на один сайт.
+         */
+        private int maxUrls = 1_000_000;
+        /**
+         * Наибольший размер одного файла sitemap после распаковки; по протоколу sitemaps.org - 50 МБ.
+         */
+        private long maxBytes = 50L * 1024 * 1024;
+    }
+}
@@ -0,0 +1,23 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "index-settings")
+public class IndexSettings {
+    /**
+     * Сохранять обратный индекс в сегменты на диске, чтобы не перестраивать его из БД при старте.
+     */
+    private boolean segmentsEnabled = true;
+    private String segmentsDir = "index-segments";
+    /**
+     * При большем числе сегментов фоновое слияние объединяет их.
+     */
+    private int maxSegments = 8;
+    private long mergeIntervalSeconds = 60;
+}
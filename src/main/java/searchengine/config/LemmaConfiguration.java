@@ -1,9 +1,12 @@
 package searchengine.config;
 
 import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 import java.io.IOException;
 
@@ -11,7 +14,14 @@ import java.io.IOException;
 public class LemmaConfiguration {
 
     @Bean
+    @Primary
     public LuceneMorphology luceneMorphology() throws IOException {
         return new RussianLuceneMorphology();
     }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "morphology-settings", name = "english-enabled", havingValue = "true")
+    public EnglishLuceneMorphology englishLuceneMorphology() throws IOException {
+        return new EnglishLuceneMorphology();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "morphology-settings")
+public class MorphologySettings {
+    /**
+     * Сколько словоформ держать в кэше морфологии.
+     */
+    private long cacheSize = 200_000;
+    /**
+     * Индексировать и искать также латинские слова через английскую морфологию.
+     */
+    private boolean englishEnabled = false;
+}
@@ -0,0 +1,34 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    /**
+     * Леммы, встречающиеся на большей доле страниц сайта, из запроса исключаются.
+     */
+    private double maxFrequencyShare = 0.8;
+    /**
+     * Сколько лучших страниц ранжируется для запроса, даже если выдача просит меньше; более глубокие
+     * страницы выдачи ранжируются по требованию.
+     */
+    private int rankDepth = 100;
+    /**
+     * Наибольшее число результатов на одной странице выдачи; больший limit в запросе уменьшается до него.
+     */
+    private int maxLimit = 100;
+    /**
+     * Сколько ранжированных страниц суммарно держит кэш результатов поиска; 0 отключает кэш.
+     */
+    private long resultCacheMaxPages = 200_000;
+    /**
+     * Сколько готовых страниц выдачи со сниппетами держит кэш.
+     */
+    private long snippetCacheSize = 2_000;
+}
@@ -2,15 +2,18 @@ package searchengine.controllers;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import searchengine.config.SearchSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.dto.indexing.ErrorOperation;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.abstracts.IndexingService;
+import searchengine.services.abstracts.SearchService;
 import searchengine.services.abstracts.StatisticsService;
 
 @RestController
@@ -19,12 +22,17 @@ public class ApiController {
 
     private final StatisticsService statisticsService;
     private final IndexingService indexingService;
+    private final SearchService searchService;
     private final SitesList sites;
+    private final SearchSettings searchSettings;
 
-    public ApiController(StatisticsService statisticsService, IndexingService indexingService, SitesList sites) {
+    public ApiController(StatisticsService statisticsService, IndexingService indexingService,
+                         SearchService searchService, SitesList sites, SearchSettings searchSettings) {
         this.statisticsService = statisticsService;
         this.indexingService = indexingService;
+        this.searchService = searchService;
         this.sites = sites;
+        this.searchSettings = searchSettings;
     }
 
     @GetMapping("/statistics")
@@ -35,7 +43,11 @@ public class ApiController {
     @GetMapping("/startIndexing")
     public ResponseEntity<Object> startIndexing() {
         if (!indexingService.getIsIndexingStarted()) {
-            return ResponseEntity.ok(indexingService.startIndexing());
+            Object result = indexingService.startIndexing();
+            if (result instanceof ErrorOperation) {
+                return ResponseEntity.badRequest().body(result);
+            }
+            return ResponseEntity.ok(result);
         }
         return ResponseEntity.badRequest().body(new ErrorOperation("Индексация уже запущена"));
     }
@@ -48,6 +60,15 @@ public class ApiController {
         return ResponseEntity.badRequest().body(new ErrorOperation("Индексация не запущена"));
     }
 
+    @GetMapping("/indexingJob/{jobId}")
+    public ResponseEntity<Object> indexingJob(@PathVariable("jobId") String jobId) {
+        Object result = indexingService.getIndexingJob(jobId);
+        if (result instanceof ErrorOperation) {
+            return ResponseEntity.badRequest().body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+
     @PostMapping("/indexPage")
     public ResponseEntity<Object> indexPage(@RequestParam(name = "url") String url) {
         if (!indexingService.getIsIndexingStarted()) {
@@ -61,11 +82,19 @@ public class ApiController {
         return ResponseEntity.badRequest().body(new ErrorOperation("Индексация уже запущена"));
     }
 
-    @GetMapping
-    public ResponseEntity<Object> search(@RequestParam(value = "query") String query,
-                                         @RequestParam(value = "site") String site,
-                                         @RequestParam(value = "offset", required = false) int offset,
-                                         @RequestParam(value = "limit", required = false) int limit) {
-        return ResponseEntity.ok(indexingService.getIsIndexingStarted());
+    @GetMapping("/search")
+    public ResponseEntity<Object> search(@RequestParam(value = "query", required = false) String query,
+                                         @RequestParam(value = "site", required = false) String site,
+                                         @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                         @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        if (query == null || query.isBlank()) {
+            return ResponseEntity.badRequest().body(new ErrorOperation("Задан пустой поисковый запрос"));
+        }
+        Object result = searchService.search(query, site, Math.max(0, offset),
+                Math.max(1, Math.min(limit, searchSettings.getMaxLimit())));
+        if (result instanceof ErrorOperation) {
+            return ResponseEntity.badRequest().body(result);
+        }
+        return ResponseEntity.ok(result);
     }
 }
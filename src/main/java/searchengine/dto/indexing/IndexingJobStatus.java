@@ -0,0 +1,24 @@
+package searchengine.dto.indexing;
+
+import lombok.Getter;
+import searchengine.services.crawler.IndexingJob;
+
+import java.time.LocalDateTime;
+
+@Getter
+public class IndexingJobStatus {
+    private final String result = "true";
+    private final String jobId;
+    private final IndexingJob.State state;
+    private final LocalDateTime startTime;
+    private final LocalDateTime endTime;
+    private final String error;
+
+    public IndexingJobStatus(IndexingJob job) {
+        this.jobId = job.getId();
+        this.state = job.getState();
+        this.startTime = job.getStartTime();
+        this.endTime = job.getEndTime();
+        this.error = job.getError();
+    }
+}
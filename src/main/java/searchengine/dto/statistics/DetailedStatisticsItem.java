@@ -11,6 +11,8 @@ public class DetailedStatisticsItem {
     private String status;
     private LocalDateTime statusTime;
     private String error;
-    private int pages;
-    private int lemmas;
+    private long pages;
+    private long lemmas;
+    private double pagesPerSecond;
+    private int queueDepth;
 }
@@ -5,7 +5,9 @@ import lombok.Data;
 @Data
 public class TotalStatistics {
     private int sites;
-    private int pages;
-    private int lemmas;
+    private long pages;
+    private long lemmas;
     private boolean indexing;
+    private double pagesPerSecond;
+    private int queueDepth;
 }
@@ -0,0 +1,51 @@
+package searchengine.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.MapsId;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Сжатое содержимое страницы, вынесенное из таблицы page, чтобы запросы
+ * по метаданным страниц не читали тело. Пишется и читается через PageContentStore.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "page_content")
+public class PageContent {
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "page_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private PageEntity page;
+
+    @Column(nullable = false)
+    private byte codec;
+
+    @Column(columnDefinition = "LONGBLOB", nullable = false)
+    private byte[] html;
+
+    @Column(nullable = false)
+    private int htmlLength;
+
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] plainText;
+
+    @Column(nullable = false)
+    private int plainTextLength;
+}
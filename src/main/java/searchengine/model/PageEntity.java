@@ -5,17 +5,19 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import javax.persistence.CascadeType;
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
-import javax.persistence.Index;
-import javax.persistence.JoinColumn;
-import javax.persistence.ManyToOne;
-import javax.persistence.OneToMany;
-import javax.persistence.Table;
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.UniqueConstraint;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,8 +25,10 @@ import java.util.List;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "page")
+@Table(name = "page", uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "path_hash"}))
 public class PageEntity {
+    public static final int MAX_TITLE_LENGTH = 512;
+
     @Id
     @Column(nullable = false)
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -35,15 +39,50 @@ public class PageEntity {
     private SiteEntity siteId;
 
 
-    @Column(name = "path", columnDefinition = "TEXT NOT NULL, index(path(512))", unique = true, nullable = false)
+    @Column(name = "path", columnDefinition = "TEXT NOT NULL")
     private String path;
 
+    /**
+     * 64-битный хэш нормализованного пути: уникален в пределах сайта и заменяет индекс по TEXT-колонке.
+     */
+    @Column(name = "path_hash", nullable = false)
+    private long pathHash;
+
     @Column(nullable = false)
     private int code;
 
-    @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
+    /**
+     * Валидаторы ответа для условных запросов при повторном обходе.
+     */
+    @Column(length = 255)
+    private String etag;
+
+    @Column(length = 64)
+    private String lastModified;
+
+    /**
+     * 64-битный хэш заголовка и текста: страница с тем же хэшем не переиндексируется.
+     */
+    @Column(nullable = false)
+    private long contentHash;
+
+    /**
+     * HTML страницы. Хранится сжатым в page_content и сюда не загружается:
+     * поле заполняется при обходе и читается через PageContentStore.
+     */
+    @Transient
     private String content;
 
+    @Column(length = MAX_TITLE_LENGTH)
+    private String title;
+
+    /**
+     * Текст страницы без разметки, извлекается один раз при индексации - по нему строятся сниппеты.
+     * Хранится вместе с HTML в page_content.
+     */
+    @Transient
+    private String plainText;
+
     @OneToMany(mappedBy = "pageByIndex", cascade = CascadeType.REMOVE)
     private List<IndexPageLemma> indexesPage = new ArrayList<>();
 
@@ -61,4 +100,8 @@ public class PageEntity {
         this.code = code;
         this.content = content;
     }
+
+    public static String truncateTitle(String title) {
+        return title.length() > MAX_TITLE_LENGTH ? title.substring(0, MAX_TITLE_LENGTH) : title;
+    }
 }
@@ -9,18 +9,18 @@ import lombok.Setter;
 import lombok.ToString;
 import org.hibernate.Hibernate;
 
-import javax.persistence.CascadeType;
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.EnumType;
-import javax.persistence.Enumerated;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
-import javax.persistence.OneToMany;
-import javax.persistence.Table;
-import javax.persistence.Temporal;
-import javax.persistence.TemporalType;
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
 import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.Objects;
@@ -53,6 +53,16 @@ public class SiteEntity {
 
     @Column(nullable = false, columnDefinition = "VARCHAR(255)")
     private String name;
+
+    /**
+     * Счётчики меняются только SQL-запросами писателей индекса (см. SiteCounters),
+     * поэтому сохранение сущности их не перезаписывает.
+     */
+    @Column(insertable = false, updatable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int pageCount;
+
+    @Column(insertable = false, updatable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int lemmaCount;
     @OneToMany(mappedBy = "siteId", cascade = CascadeType.ALL)
     private Set<PageEntity> pages;
 
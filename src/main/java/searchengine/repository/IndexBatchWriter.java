@@ -0,0 +1,294 @@
+package searchengine.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.BatchSize;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.services.crawler.UrlHash;
+import searchengine.services.index.IndexEntry;
+import searchengine.services.index.InvertedIndex;
+import searchengine.services.statistics.SearchEngineMetrics;
+import searchengine.services.statistics.SiteCounters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетная запись страниц, лемм и индексов через JDBC. Содержимое страниц пишется сжатым в page_content.
+ * Hibernate не умеет пакетировать вставки с GenerationType.IDENTITY,
+ * поэтому строки пишутся напрямую; при rewriteBatchedStatements=true
+ * драйвер MySQL превращает каждую пачку в многострочный INSERT.
+ * Таблица indexPage физически называется index_page (CamelCaseToUnderscoresNamingStrategy).
+ */
+@Slf4j
+@Repository
+public class IndexBatchWriter {
+    private static final String INSERT_PAGE_SQL = "INSERT INTO page " +
+            "(site_id, path, path_hash, code, title, etag, last_modified, content_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_PAGE_SQL = "UPDATE page SET code = ?, title = ?, etag = ?, last_modified = ?, " +
+            "content_hash = ? WHERE id = ?";
+    private static final String UPDATE_VALIDATORS_SQL = "UPDATE page SET etag = ?, last_modified = ? WHERE id = ?";
+    private static final String SELECT_PAGE_INDEXES_SQL = "SELECT i.page_id, i.lemma_id, i.rank_lemma, l.lemma " +
+            "FROM index_page i JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id IN (:pageIds)";
+    private static final String UPDATE_INDEX_SQL = "UPDATE index_page SET rank_lemma = ? WHERE page_id = ? AND lemma_id = ?";
+    private static final String DELETE_INDEX_SQL = "DELETE FROM index_page WHERE page_id = ? AND lemma_id = ?";
+    private static final String INSERT_INDEX_SQL = "INSERT INTO index_page (page_id, lemma_id, rank_lemma) VALUES (?, ?, ?)";
+    private static final String UPDATE_SITE_COUNTERS_SQL = "UPDATE site SET page_count = page_count + ?, " +
+            "lemma_count = lemma_count + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final LemmaJdbcRepository lemmaJdbcRepository;
+    private final BatchSize batchSize;
+    private final InvertedIndex invertedIndex;
+    private final PageContentStore pageContentStore;
+    private final SiteCounters siteCounters;
+    private final SearchEngineMetrics metrics;
+
+    public IndexBatchWriter(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                            LemmaJdbcRepository lemmaJdbcRepository, BatchSize batchSize,
+                            InvertedIndex invertedIndex, PageContentStore pageContentStore,
+                            SiteCounters siteCounters, SearchEngineMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.lemmaJdbcRepository = lemmaJdbcRepository;
+        this.batchSize = batchSize;
+        this.invertedIndex = invertedIndex;
+        this.pageContentStore = pageContentStore;
+        this.siteCounters = siteCounters;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Записывает пачку страниц сайта вместе с леммами одной транзакцией.
+     * Страницы без id вставляются и получают сгенерированный id,
+     * у уже сохранённых страниц применяется только разница лемм и индексов ({@link #updatePages}).
+     * Счётчики страниц и лемм сайта меняются в той же транзакции.
+     */
+    @Transactional
+    public void write(SiteEntity site, Map<PageEntity, Map<String, Integer>> lemmasByPage) {
+        long start = System.nanoTime();
+        Map<PageEntity, Map<String, Integer>> newPages = new IdentityHashMap<>();
+        Map<PageEntity, Map<String, Integer>> changedPages = new IdentityHashMap<>();
+        lemmasByPage.forEach((page, lemmas) -> (page.getId() == 0 ? newPages : changedPages).put(page, lemmas));
+        insertPages(site, List.copyOf(newPages.keySet()));
+
+        Map<String, Integer> pagesByLemma = new HashMap<>();
+        newPages.values().forEach(lemmas ->
+                lemmas.keySet().forEach(lemmaName -> pagesByLemma.merge(lemmaName, 1, Integer::sum)));
+        long rows = newPages.size() + pagesByLemma.size();
+        int lemmaDelta = 0;
+        if (!pagesByLemma.isEmpty()) {
+            LemmaJdbcRepository.Upserted upserted = lemmaJdbcRepository.upsertFrequencies(site.getId(), pagesByLemma);
+            lemmaDelta += upserted.created();
+            rows += insertIndexes(newPages, upserted.lemmaIds());
+        }
+        if (!changedPages.isEmpty()) {
+            Written written = updatePages(site, changedPages);
+            rows += written.rows();
+            lemmaDelta += written.lemmaDelta();
+        }
+        updateSiteCounters(site.getId(), newPages.size(), lemmaDelta);
+
+        long nanos = System.nanoTime() - start;
+        log.debug("Записано строк: {} (новых страниц {}, изменённых {}) за {} мс, {} строк/с",
+                rows, newPages.size(), changedPages.size(),
+                TimeUnit.NANOSECONDS.toMillis(nanos), rowsPerSecond(rows, nanos));
+        long flushedRows = rows;
+        afterCommit(() -> metrics.flushed(System.nanoTime() - start, lemmasByPage.size(), flushedRows));
+    }
+
+    /**
+     * Переиндексирует уже сохранённые страницы, не меняя их id: старые индексы читаются из index_page,
+     * сравниваются с новыми леммами, и пишутся только удалённые, изменённые и добавленные строки.
+     * Частоты лемм меняются только у исчезнувших и появившихся на странице лемм.
+     */
+    private Written updatePages(SiteEntity site, Map<PageEntity, Map<String, Integer>> lemmasByPage) {
+        Map<Integer, Map<String, OldIndex>> oldByPage = readPageIndexes(
+                lemmasByPage.keySet().stream().map(PageEntity::getId).toList());
+
+        List<Object[]> deletedRows = new ArrayList<>();
+        List<Object[]> updatedRows = new ArrayList<>();
+        Map<Integer, Integer> removedPagesByLemma = new HashMap<>();
+        Map<String, Integer> addedPagesByLemma = new HashMap<>();
+        Map<PageEntity, Map<String, Integer>> addedByPage = new IdentityHashMap<>();
+        lemmasByPage.forEach((page, lemmas) -> {
+            Map<String, OldIndex> old = oldByPage.getOrDefault(page.getId(), Map.of());
+            old.forEach((lemmaName, index) -> {
+                Integer count = lemmas.get(lemmaName);
+                if (count == null) {
+                    deletedRows.add(new Object[]{page.getId(), index.lemmaId()});
+                    removedPagesByLemma.merge(index.lemmaId(), 1, Integer::sum);
+                } else if (count.floatValue() != index.rank()) {
+                    updatedRows.add(new Object[]{count.floatValue(), page.getId(), index.lemmaId()});
+                }
+            });
+            Map<String, Integer> added = new HashMap<>();
+            lemmas.forEach((lemmaName, count) -> {
+                if (!old.containsKey(lemmaName)) {
+                    added.put(lemmaName, count);
+                    addedPagesByLemma.merge(lemmaName, 1, Integer::sum);
+                }
+            });
+            addedByPage.put(page, added);
+        });
+
+        List<Object[]> pageRows = lemmasByPage.keySet().stream()
+                .map(page -> new Object[]{page.getCode(), page.getTitle(), page.getEtag(), page.getLastModified(),
+                        page.getContentHash(), page.getId()})
+                .toList();
+        jdbcTemplate.batchUpdate(UPDATE_PAGE_SQL, pageRows);
+        pageContentStore.replace(List.copyOf(lemmasByPage.keySet()));
+        jdbcTemplate.batchUpdate(DELETE_INDEX_SQL, deletedRows);
+        jdbcTemplate.batchUpdate(UPDATE_INDEX_SQL, updatedRows);
+        int lemmaDelta = -lemmaJdbcRepository.decrementFrequencies(removedPagesByLemma);
+
+        Map<String, Integer> addedLemmaIds = Map.of();
+        List<Object[]> insertedRows = new ArrayList<>();
+        if (!addedPagesByLemma.isEmpty()) {
+            LemmaJdbcRepository.Upserted upserted = lemmaJdbcRepository.upsertFrequencies(site.getId(), addedPagesByLemma);
+            lemmaDelta += upserted.created();
+            addedLemmaIds = upserted.lemmaIds();
+            Map<String, Integer> lemmaIds = addedLemmaIds;
+            addedByPage.forEach((page, added) -> added.forEach((lemmaName, count) ->
+                    insertedRows.add(new Object[]{page.getId(), lemmaIds.get(lemmaName), count.floatValue()})));
+            jdbcTemplate.batchUpdate(INSERT_INDEX_SQL, insertedRows);
+        }
+
+        Map<String, Integer> newLemmaIds = addedLemmaIds;
+        lemmasByPage.forEach((page, lemmas) -> {
+            Map<String, OldIndex> old = oldByPage.getOrDefault(page.getId(), Map.of());
+            List<IndexEntry> entries = new ArrayList<>(lemmas.size());
+            lemmas.forEach((lemmaName, count) -> {
+                OldIndex index = old.get(lemmaName);
+                int lemmaId = index != null ? index.lemmaId() : newLemmaIds.get(lemmaName);
+                entries.add(new IndexEntry(lemmaId, page.getId(), count.floatValue()));
+            });
+            List<Integer> oldLemmaIds = old.values().stream().map(OldIndex::lemmaId).toList();
+            afterCommit(() -> invertedIndex.replacePage(page.getId(), oldLemmaIds, entries));
+        });
+        return new Written(pageRows.size() + deletedRows.size() + updatedRows.size() + insertedRows.size()
+                + removedPagesByLemma.size() + addedPagesByLemma.size(), lemmaDelta);
+    }
+
+    private void updateSiteCounters(int siteId, int pages, int lemmas) {
+        if (pages == 0 && lemmas == 0) {
+            return;
+        }
+        jdbcTemplate.update(UPDATE_SITE_COUNTERS_SQL, pages, lemmas, siteId);
+        afterCommit(() -> siteCounters.add(siteId, pages, lemmas));
+    }
+
+    /**
+     * Обновляет валидаторы страниц, содержимое которых не изменилось.
+     */
+    @Transactional
+    public void updateValidators(List<PageEntity> pages) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_VALIDATORS_SQL, pages.stream()
+                .map(page -> new Object[]{page.getEtag(), page.getLastModified(), page.getId()})
+                .toList());
+    }
+
+    private void insertPages(SiteEntity site, List<PageEntity> pages) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_PAGE_SQL,
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (PageEntity page : pages) {
+                    page.setPathHash(UrlHash.hash64(page.getPath()));
+                    statement.setInt(1, site.getId());
+                    statement.setString(2, page.getPath());
+                    statement.setLong(3, page.getPathHash());
+                    statement.setInt(4, page.getCode());
+                    statement.setString(5, page.getTitle());
+                    statement.setString(6, page.getEtag());
+                    statement.setString(7, page.getLastModified());
+                    statement.setLong(8, page.getContentHash());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (PageEntity page : pages) {
+                        keys.next();
+                        page.setId(keys.getInt(1));
+                    }
+                }
+            }
+            return null;
+        });
+        pageContentStore.insert(pages);
+    }
+
+    private int insertIndexes(Map<PageEntity, Map<String, Integer>> lemmasByPage, Map<String, Integer> lemmaIds) {
+        List<Object[]> rows = new ArrayList<>();
+        lemmasByPage.forEach((page, lemmas) -> lemmas.forEach((lemmaName, count) ->
+                rows.add(new Object[]{page.getId(), lemmaIds.get(lemmaName), (float) count})));
+        int flushRows = Math.max(1, batchSize.getFlushRows());
+        for (int from = 0; from < rows.size(); from += flushRows) {
+            jdbcTemplate.batchUpdate(INSERT_INDEX_SQL, rows.subList(from, Math.min(from + flushRows, rows.size())));
+        }
+        List<IndexEntry> entries = rows.stream()
+                .map(row -> new IndexEntry((int) row[1], (int) row[0], (float) row[2]))
+                .toList();
+        afterCommit(() -> invertedIndex.add(entries));
+        return rows.size();
+    }
+
+    private Map<Integer, Map<String, OldIndex>> readPageIndexes(List<Integer> pageIds) {
+        Map<Integer, Map<String, OldIndex>> byPage = new HashMap<>();
+        namedJdbcTemplate.query(SELECT_PAGE_INDEXES_SQL, new MapSqlParameterSource("pageIds", pageIds), rs -> {
+            byPage.computeIfAbsent(rs.getInt("page_id"), id -> new HashMap<>())
+                    .put(rs.getString("lemma"), new OldIndex(rs.getInt("lemma_id"), rs.getFloat("rank_lemma")));
+        });
+        return byPage;
+    }
+
+    /**
+     * Изменения попадают в обратный индекс в памяти только после фиксации транзакции.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static long rowsPerSecond(long rows, long nanos) {
+        return nanos == 0 ? 0 : rows * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    private record OldIndex(int lemmaId, float rank) {
+    }
+
+    /**
+     * @param lemmaDelta созданные минус удалённые леммы сайта
+     */
+    private record Written(long rows, int lemmaDelta) {
+    }
+}
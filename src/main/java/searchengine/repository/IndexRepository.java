@@ -1,6 +1,7 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -9,6 +10,7 @@ import searchengine.model.IndexPageLemma;
 import searchengine.model.Lemma;
 import searchengine.model.PageEntity;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,4 +21,34 @@ public interface IndexRepository extends JpaRepository<IndexPageLemma, Integer>
 
     @Query(value = "select i.lemmaByIndex.id from IndexPageLemma i where i.pageByIndex.id =:pageId")
     List<Integer> getIndexesByPageByIndex(@Param("pageId") int pageId);
+
+    @Query(value = "select i.pageByIndex.id as pageId, i.rankLemma as rank from IndexPageLemma i " +
+            "where i.lemmaByIndex.id =:lemmaId")
+    List<Posting> getPostingsByLemmaId(@Param("lemmaId") int lemmaId);
+
+    @Query(value = "select i.pageByIndex.id as pageId, i.rankLemma as rank from IndexPageLemma i " +
+            "where i.lemmaByIndex.id =:lemmaId and i.pageByIndex.id in :pageIds")
+    List<Posting> getPostingsByLemmaIdAndPageIdIn(@Param("lemmaId") int lemmaId,
+                                                  @Param("pageIds") Collection<Integer> pageIds);
+
+    @Query(value = "select i.lemmaByIndex.id as lemmaId, i.pageByIndex.id as pageId, i.rankLemma as rank " +
+            "from IndexPageLemma i where i.lemmaByIndex.id > :lemmaId " +
+            "or (i.lemmaByIndex.id = :lemmaId and i.pageByIndex.id > :pageId) " +
+            "order by i.lemmaByIndex.id, i.pageByIndex.id")
+    List<IndexRow> getIndexRowsAfter(@Param("lemmaId") int lemmaId, @Param("pageId") int pageId, Pageable pageable);
+
+    @Query(value = "select i.lemmaByIndex.id as lemmaId, i.pageByIndex.id as pageId, i.rankLemma as rank " +
+            "from IndexPageLemma i where i.pageByIndex.id in :pageIds")
+    List<IndexRow> getIndexRowsByPageIdIn(@Param("pageIds") Collection<Integer> pageIds);
+
+    interface Posting {
+        int getPageId();
+        float getRank();
+    }
+
+    interface IndexRow {
+        int getLemmaId();
+        int getPageId();
+        float getRank();
+    }
 }
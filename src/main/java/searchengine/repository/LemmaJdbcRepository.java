@@ -0,0 +1,101 @@
+package searchengine.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетные операции с таблицей lemma в обход Hibernate.
+ * Опирается на уникальный ключ (site_id, lemma).
+ */
+@Repository
+public class LemmaJdbcRepository {
+    private static final int IN_CHUNK_SIZE = 1000;
+    private static final String UPSERT_SQL = "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+    private static final String DECREMENT_SQL = "UPDATE lemma SET frequency = frequency - ? WHERE id = ?";
+    private static final String DELETE_UNUSED_SQL = "DELETE FROM lemma WHERE id IN (:ids) AND frequency <= 0";
+    private static final String SELECT_IDS_SQL = "SELECT id, lemma FROM lemma " +
+            "WHERE site_id = :siteId AND lemma IN (:lemmas)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public LemmaJdbcRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    /**
+     * Увеличивает frequency каждой леммы на число новых страниц с ней, создавая недостающие.
+     * Леммы пишутся в одном порядке, чтобы параллельные писатели не ловили взаимоблокировки.
+     * Id существующих лемм читаются до записи, после неё - только id созданных,
+     * так что число новых лемм известно без отдельного запроса.
+     */
+    public Upserted upsertFrequencies(int siteId, Map<String, Integer> pagesByLemma) {
+        Map<String, Integer> lemmaIds = getLemmaIds(siteId, pagesByLemma.keySet());
+        List<Object[]> rows = new ArrayList<>(pagesByLemma.size());
+        pagesByLemma.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> rows.add(new Object[]{siteId, entry.getKey(), entry.getValue()}));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        List<String> created = pagesByLemma.keySet().stream()
+                .filter(lemma -> !lemmaIds.containsKey(lemma))
+                .toList();
+        if (!created.isEmpty()) {
+            lemmaIds.putAll(getLemmaIds(siteId, created));
+        }
+        return new Upserted(lemmaIds, created.size());
+    }
+
+    /**
+     * Уменьшает frequency лемм на число страниц, с которых они исчезли, и удаляет леммы, не оставшиеся ни на одной.
+     *
+     * @return число удалённых лемм
+     */
+    public int decrementFrequencies(Map<Integer, Integer> removedPagesByLemmaId) {
+        if (removedPagesByLemmaId.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> rows = new ArrayList<>(removedPagesByLemmaId.size());
+        removedPagesByLemmaId.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> rows.add(new Object[]{entry.getValue(), entry.getKey()}));
+        jdbcTemplate.batchUpdate(DECREMENT_SQL, rows);
+        List<Integer> ids = new ArrayList<>(removedPagesByLemmaId.keySet());
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            deleted += namedJdbcTemplate.update(DELETE_UNUSED_SQL,
+                    new MapSqlParameterSource("ids", ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()))));
+        }
+        return deleted;
+    }
+
+    public Map<String, Integer> getLemmaIds(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> lemmaIds = new HashMap<>(lemmas.size() * 2);
+        List<String> lemmaList = new ArrayList<>(lemmas);
+        for (int from = 0; from < lemmaList.size(); from += IN_CHUNK_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("siteId", siteId)
+                    .addValue("lemmas", lemmaList.subList(from, Math.min(from + IN_CHUNK_SIZE, lemmaList.size())));
+            namedJdbcTemplate.query(SELECT_IDS_SQL, params,
+                    rs -> {
+                        lemmaIds.put(rs.getString("lemma"), rs.getInt("id"));
+                    });
+        }
+        return lemmaIds;
+    }
+
+    /**
+     * @param created сколько лемм из запроса появилось впервые
+     */
+    public record Upserted(Map<String, Integer> lemmaIds, int created) {
+    }
+}
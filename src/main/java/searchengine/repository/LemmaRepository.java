@@ -8,6 +8,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Lemma;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,6 +17,9 @@ public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     @Query(value = "SELECT l from Lemma l where l.lemma =:lemma and l.siteByLemma.id =:siteId")
     Lemma getLemmaByLemmaAndSiteId(@Param("lemma") String lemma, @Param("siteId") int siteId);
 
+    @Query(value = "SELECT l from Lemma l where l.siteByLemma.id =:siteId and l.lemma in :lemmas")
+    List<Lemma> getLemmasBySiteIdAndLemmaIn(@Param("siteId") int siteId, @Param("lemmas") Collection<String> lemmas);
+
     @Modifying
     @Query(value = "DELETE FROM Lemma l WHERE l.id IN :ids")
     void deleteLemmasByIds(@Param("ids") List<Integer> ids);
@@ -0,0 +1,165 @@
+package searchengine.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.config.ContentSettings;
+import searchengine.model.PageEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатые HTML и текст страниц в таблице page_content.
+ * Тело страницы читается только там, где оно действительно нужно: для сниппетов и переиндексации.
+ */
+@Repository
+public class PageContentStore {
+    private static final int IN_CHUNK_SIZE = 1000;
+    private static final byte CODEC_NONE = 0;
+    private static final byte CODEC_DEFLATE = 1;
+    private static final String INSERT_SQL = "INSERT INTO page_content " +
+            "(page_id, codec, html, html_length, plain_text, plain_text_length) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM page_content WHERE page_id IN (:pageIds)";
+    private static final String SELECT_TEXTS_SQL = "SELECT page_id, codec, plain_text, plain_text_length " +
+            "FROM page_content WHERE page_id IN (:pageIds)";
+    private static final String SELECT_PAGE_SQL = "SELECT codec, html, html_length, plain_text, plain_text_length " +
+            "FROM page_content WHERE page_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final ContentSettings contentSettings;
+
+    public PageContentStore(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                            ContentSettings contentSettings) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.contentSettings = contentSettings;
+    }
+
+    /**
+     * Сохраняет содержимое страниц, уже получивших id.
+     */
+    public void insert(List<PageEntity> pages) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        byte codec = contentSettings.getCodec() == ContentSettings.Codec.DEFLATE ? CODEC_DEFLATE : CODEC_NONE;
+        Deflater deflater = new Deflater(contentSettings.getLevel(), true);
+        try {
+            List<Object[]> rows = new ArrayList<>(pages.size());
+            for (PageEntity page : pages) {
+                byte[] html = utf8(page.getContent());
+                byte[] text = utf8(page.getPlainText());
+                rows.add(new Object[]{page.getId(), codec,
+                        encode(html, codec, deflater), html.length,
+                        encode(text, codec, deflater), text.length});
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Заменяет содержимое переиндексированных страниц.
+     */
+    public void replace(List<PageEntity> pages) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        namedJdbcTemplate.update(DELETE_SQL,
+                new MapSqlParameterSource("pageIds", pages.stream().map(PageEntity::getId).toList()));
+        insert(pages);
+    }
+
+    /**
+     * Тексты страниц без разметки по их id; страниц без сохранённого содержимого в ответе нет.
+     */
+    public Map<Integer, String> getPlainTexts(Collection<Integer> pageIds) {
+        Map<Integer, String> texts = new HashMap<>(pageIds.size() * 2);
+        List<Integer> idList = new ArrayList<>(pageIds);
+        for (int from = 0; from < idList.size(); from += IN_CHUNK_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource("pageIds",
+                    idList.subList(from, Math.min(from + IN_CHUNK_SIZE, idList.size())));
+            namedJdbcTemplate.query(SELECT_TEXTS_SQL, params, rs -> {
+                texts.put(rs.getInt("page_id"), decode(rs.getBytes("plain_text"), rs.getByte("codec"),
+                        rs.getInt("plain_text_length")));
+            });
+        }
+        return texts;
+    }
+
+    /**
+     * Заполняет content и plainText страницы из хранилища. Возвращает false, если содержимого нет.
+     */
+    public boolean load(PageEntity page) {
+        return Boolean.TRUE.equals(jdbcTemplate.query(SELECT_PAGE_SQL, rs -> {
+            if (!rs.next()) {
+                return false;
+            }
+            byte codec = rs.getByte("codec");
+            page.setContent(decode(rs.getBytes("html"), codec, rs.getInt("html_length")));
+            page.setPlainText(decode(rs.getBytes("plain_text"), codec, rs.getInt("plain_text_length")));
+            return true;
+        }, page.getId()));
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(byte[] data, byte codec, Deflater deflater) {
+        if (codec == CODEC_NONE || data.length == 0) {
+            return data;
+        }
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+
+    private static String decode(byte[] data, byte codec, int length) {
+        if (data == null) {
+            return null;
+        }
+        if (codec == CODEC_NONE || length == 0) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(result, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new IllegalStateException("Повреждено сжатое содержимое страницы: " + read + " из " + length + " байт");
+            }
+            return new String(result, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Повреждено сжатое содержимое страницы", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
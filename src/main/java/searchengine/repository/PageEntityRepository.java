@@ -7,13 +7,30 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.PageEntity;
 
+import java.util.List;
+
 @Repository
 @Transactional
 public interface PageEntityRepository extends JpaRepository<PageEntity, Integer> {
 
-    PageEntity getFirstByPath(String path);
-    PageEntity getPageEntityByPath(String path);
+    @Query(value = "select p from PageEntity p where p.siteId.id = :siteId and p.pathHash = :pathHash")
+    PageEntity getPageBySiteIdAndPathHash(@Param("siteId") int siteId, @Param("pathHash") long pathHash);
     void deletePageEntityById(int pageId);
     @Query(value = "select count(p) from PageEntity p where p.siteId.id =:siteId")
     int countPagesBySiteId(@Param("siteId") int siteId);
+
+    @Query(value = "select p.id from PageEntity p")
+    List<Integer> getAllPageIds();
+
+    @Query(value = "select p.id as id, p.path as path, p.etag as etag, p.lastModified as lastModified, " +
+            "p.contentHash as contentHash from PageEntity p where p.siteId.id = :siteId")
+    List<PageState> getPageStatesBySiteId(@Param("siteId") int siteId);
+
+    interface PageState {
+        int getId();
+        String getPath();
+        String getEtag();
+        String getLastModified();
+        long getContentHash();
+    }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ package searchengine.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.SiteEntity;
@@ -20,4 +21,8 @@ public interface SiteEntityRepository extends JpaRepository<SiteEntity, Integer>
     @Query(value = "select s from SiteEntity s")
     List<SiteEntity> getSiteEntities();
 
+    @Modifying
+    @Query(value = "UPDATE site SET page_count = :pages, lemma_count = :lemmas WHERE id = :siteId", nativeQuery = true)
+    void updateCounters(@Param("siteId") int siteId, @Param("pages") int pages, @Param("lemmas") int lemmas);
+
 }
\ No newline at end of file
@@ -2,43 +2,77 @@ package searchengine.services;
 
 import lombok.Getter;
 import lombok.Setter;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import searchengine.config.BatchSize;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.dto.indexing.DoneOperation;
 import searchengine.dto.indexing.ErrorOperation;
-import searchengine.model.Lemma;
+import searchengine.dto.indexing.IndexingJobStatus;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 import searchengine.model.Status;
+import searchengine.repository.IndexBatchWriter;
 import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageEntityRepository;
 import searchengine.repository.SiteEntityRepository;
 import searchengine.services.abstracts.IndexingService;
 import searchengine.services.abstracts.LemmaService;
+import searchengine.services.crawler.CrawlFrontier;
+import searchengine.services.crawler.HostPoliteness;
+import searchengine.services.crawler.HtmlScanner;
+import searchengine.services.crawler.HttpFetcher;
+import searchengine.services.crawler.IndexingJob;
+import searchengine.services.crawler.PipelineStage;
+import searchengine.services.crawler.SitemapParser;
+import searchengine.services.crawler.UrlHash;
+import searchengine.services.crawler.UrlNormalizer;
+import searchengine.services.crawler.VisitedUrls;
+import searchengine.services.index.IndexGeneration;
+import searchengine.services.index.InvertedIndex;
+import searchengine.services.morphology.MorphologyCache;
+import searchengine.services.statistics.SearchEngineMetrics;
+import searchengine.services.statistics.SiteCounters;
 
-import java.io.File;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,23 +80,45 @@ import java.util.logging.Logger;
 @Getter
 @Setter
 public class IndexingServiceImpl implements IndexingService {
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int MAX_KEPT_JOBS = 20;
     private final SiteEntityRepository siteEntityRepository;
     private final SitesList sites;
     private final BatchSize batchSize;
-    private final ForkJoinPool forkJoinPool = new ForkJoinPool(5);
+    private final CrawlerSettings crawlerSettings;
+    private final ForkJoinPool forkJoinPool;
+    private final HostPoliteness hostPoliteness;
+    private final HttpFetcher httpFetcher;
+    private final Semaphore inFlightPages;
     private final Logger logger = Logger.getLogger(IndexingServiceImpl.SiteCrawler.class.getName());
     private final PageEntityRepository pageEntityRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
     private final LemmaService lemmaService;
-    private volatile boolean isIndexingStarted;
+    private final IndexBatchWriter indexBatchWriter;
+    private final InvertedIndex invertedIndex;
+    private final MorphologyCache morphologyCache;
+    private final SiteCounters siteCounters;
+    private final SearchEngineMetrics metrics;
+    private final IndexGeneration indexGeneration;
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, IndexingJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IndexingJob> eldest) {
+            return size() > MAX_KEPT_JOBS;
+        }
+    });
+    private volatile IndexingJob currentJob;
     private volatile boolean isIndexingStopped;
 
 
     public IndexingServiceImpl(SiteEntityRepository siteEntityRepository, SitesList sites,
                                PageEntityRepository pageEntityRepository, LemmaRepository lemmaRepository,
                                IndexRepository indexRepository, LemmaService lemmaService,
-                               BatchSize batchSize) {
+                               BatchSize batchSize, CrawlerSettings crawlerSettings, InvertedIndex invertedIndex,
+                               MorphologyCache morphologyCache, IndexBatchWriter indexBatchWriter,
+                               SiteCounters siteCounters, SearchEngineMetrics metrics,
+                               IndexGeneration indexGeneration) {
         this.siteEntityRepository = siteEntityRepository;
         this.sites = sites;
         this.pageEntityRepository = pageEntityRepository;
@@ -70,99 +126,171 @@ public class IndexingServiceImpl implements IndexingService {
         this.indexRepository = indexRepository;
         this.lemmaService = lemmaService;
         this.batchSize = batchSize;
+        this.crawlerSettings = crawlerSettings;
+        this.invertedIndex = invertedIndex;
+        this.morphologyCache = morphologyCache;
+        this.indexBatchWriter = indexBatchWriter;
+        this.siteCounters = siteCounters;
+        this.metrics = metrics;
+        this.indexGeneration = indexGeneration;
+        this.forkJoinPool = new ForkJoinPool(crawlerSettings.getSitesParallelism());
+        this.hostPoliteness = new HostPoliteness(crawlerSettings.getMaxConnectionsPerHost(),
+                crawlerSettings.getHostDelayMs());
+        this.httpFetcher = new HttpFetcher(crawlerSettings.getFetchTimeoutMs(), crawlerSettings.getMaxBodyBytes(),
+                Set.copyOf(crawlerSettings.getHtmlContentTypes()));
+        this.inFlightPages = new Semaphore(Math.max(1, crawlerSettings.getMaxInFlight()));
     }
 
+    /**
+     * Запускает индексацию всех сайтов в фоне и сразу возвращает id задания.
+     */
     @Override
-    public Object startIndexing() {
-        setIndexingStarted(true);
+    public synchronized Object startIndexing() {
+        if (isJobRunning()) {
+            return new ErrorOperation("Индексация уже запущена");
+        }
+        IndexingJob job = new IndexingJob();
+        jobs.put(job.getId(), job);
+        currentJob = job;
         setIndexingStopped(false);
-        indexRepository.deleteAll();
-        lemmaRepository.deleteAll();
-        pageEntityRepository.deleteAll();
-        siteEntityRepository.deleteAll();
-        List<Site> sitesToIndex = sites.getSites();
-        forkJoinPool.invoke(new SiteCrawler(sitesToIndex));
-        return new DoneOperation("true");
+        jobExecutor.submit(() -> runJob(job));
+        return new IndexingJobStatus(job);
     }
 
+    private void runJob(IndexingJob job) {
+        Throwable failure = null;
+        try {
+            if (!crawlerSettings.isIncremental()) {
+                indexRepository.deleteAll();
+                lemmaRepository.deleteAll();
+                pageEntityRepository.deleteAll();
+                siteEntityRepository.deleteAll();
+                invertedIndex.clear();
+                siteCounters.clear();
+                indexGeneration.next();
+            }
+            forkJoinPool.invoke(new SiteCrawler(sites.getSites(), job));
+            logger.info(String.format("Кэш морфологии: %d словоформ, попаданий %.1f%%",
+                    morphologyCache.size(), morphologyCache.getHitRate() * 100));
+            logger.info(String.format("Запись в базу с запуска: %d строк, %.0f строк/с",
+                    metrics.flushedRows(), metrics.flushRowsPerSecond()));
+        } catch (RuntimeException e) {
+            failure = e;
+            logger.log(Level.SEVERE, "Индексация " + job.getId() + " завершилась с ошибкой", e);
+        } finally {
+            job.finish(failure);
+        }
+    }
+
+    /**
+     * Прерывает загрузки задания и ждёт освобождения всех его потоков не дольше stopTimeoutMs.
+     * Страницы, уже поставленные в очередь записи, записываются целыми пачками (каждая пачка - своя транзакция),
+     * ещё не разобранные и не лемматизированные страницы отбрасываются.
+     */
     @Override
     public Object stopIndexing() {
         setIndexingStopped(true);
-        setIndexingStarted(false);
-        return new DoneOperation("true");
+        IndexingJob job = currentJob;
+        if (job == null) {
+            return new DoneOperation("true");
+        }
+        job.cancel();
+        try {
+            if (!job.await(crawlerSettings.getStopTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                logger.warning(String.format("Индексация %s не остановилась за %d мс",
+                        job.getId(), crawlerSettings.getStopTimeoutMs()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new IndexingJobStatus(job);
+    }
+
+    @Override
+    public Object getIndexingJob(String jobId) {
+        IndexingJob job = jobs.get(jobId);
+        return job == null ? new ErrorOperation("Задание индексации не найдено") : new IndexingJobStatus(job);
     }
 
     @Override
     public Object indexPage(String url, Site siteConfig) {
-        setIndexingStarted(true);
+        if (isJobRunning()) {
+            return new ErrorOperation("Индексация уже запущена");
+        }
         SiteEntity site = siteEntityRepository.getSiteEntityByUrl(siteConfig.getUrl());
+        if (site == null) {
+            site = new SiteEntity(Status.INDEXING, LocalDateTime.now(), siteConfig.getUrl(), siteConfig.getName());
+        }
         site.setStatus(Status.INDEXING);
         site.setStatusTime(LocalDateTime.now());
         site.setLastError(null);
-        siteEntityRepository.save(site);
+        site = siteEntityRepository.save(site);
+        // Статус сайта возвращается в finally, какой бы ни была ошибка, иначе сайт остаётся в INDEXING
+        Status status = Status.INDEXED;
+        String lastError = null;
         try {
-            Connection.Response response = connection(url);
-            if (!siteConfig.getUrl().equals(site.getUrl())) {
-                return new ErrorOperation("Такого сайта в конфигурации нет");
+            HttpFetcher.Response response = fetchPage(url, null);
+            if (response.body() == null) {
+                return new ErrorOperation("Страница не является HTML или превышает допустимый размер");
             }
-
-            synchronized (site) {
-                site.setStatus(Status.INDEXING);
-                siteEntityRepository.save(site);
+            String location = normalizedLocation(response.url());
+            String siteUrl = UrlNormalizer.normalize(site.getUrl());
+            if (siteUrl == null || !UrlNormalizer.hostOf(siteUrl).equals(UrlNormalizer.hostOf(location))) {
+                return new ErrorOperation("Страница перенаправляет за пределы сайта: " + response.url());
             }
 
-            Document document = response.parse();
-            String pagePath = getRelativePathFromDocument(document);
-            PageEntity page = pageEntityRepository.getPageEntityByPath(pagePath);
-            if (page != null) {
-                deletePage(page, site);
-            }
+            String html = HtmlScanner.decode(response.body(), response.charset());
+            String pagePath = UrlNormalizer.pathOf(location);
+            HtmlScanner.Result scanned = HtmlScanner.scan(html, response.url());
+            PageEntity page = pageEntityRepository.getPageBySiteIdAndPathHash(site.getId(), UrlHash.hash64(pagePath));
 
+            // У уже сохранённой страницы сохраняется id, и записывается только разница лемм и индексов
             PageEntity pageEntity = new PageEntity(
+                    page == null ? 0 : page.getId(),
                     site,
                     pagePath,
                     response.statusCode(),
-                    document.html());
-            pageEntityRepository.save(pageEntity);
+                    html);
+            pageEntity.setTitle(PageEntity.truncateTitle(scanned.title()));
+            pageEntity.setPlainText(scanned.text());
+            pageEntity.setEtag(response.header("ETag"));
+            pageEntity.setLastModified(response.header("Last-Modified"));
+            pageEntity.setContentHash(contentHash(scanned.title(), scanned.text()));
             lemmaService.saveLemma(pageEntity, site);
-
-            synchronized (site) {
-                site.setStatus(Status.INDEXED);
-                site.setStatusTime(LocalDateTime.now());
-                siteEntityRepository.save(site);
-            }
-            site.setStatusTime(LocalDateTime.now());
-            site.setStatus(Status.INDEXED);
-            siteEntityRepository.save(site);
-            setIndexingStarted(false);
+            indexGeneration.next();
             return new DoneOperation("true");
-        } catch (IOException e) {
-            site.setStatus(Status.FAILED);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            status = Status.FAILED;
+            lastError = e.getMessage();
+            logger.log(Level.WARNING, "Ошибка при индексации страницы " + url, e);
+            throw e instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(e);
+        } finally {
+            site.setStatus(status);
             site.setStatusTime(LocalDateTime.now());
-            site.setLastError(e.getMessage());
+            site.setLastError(lastError);
             siteEntityRepository.save(site);
-            setIndexingStarted(false);
-            logger.log(Level.WARNING, "Ошибка при индексации страницы " + url, e);
-            throw new RuntimeException(e);
         }
     }
 
-    private void deletePage(PageEntity page, SiteEntity site) {
-        Map<String, Integer> lemmasFromPage = lemmaService.lemmasAndCount(page.getContent());
-        lemmasFromPage.forEach((lemmaName, count) -> {
-            Lemma getLemmaFromDB = lemmaRepository.getLemmaByLemmaAndSiteId(lemmaName, site.getId());
-            if (getLemmaFromDB != null) {
-                getLemmaFromDB.setFrequency(getLemmaFromDB.getFrequency() - 1);
-                lemmaRepository.save(getLemmaFromDB);
-            }
-        });
-        pageEntityRepository.deletePageEntityById(page.getId());
+    private static long contentHash(String title, String text) {
+        return UrlHash.hash64(title + '\n' + text);
     }
 
 
     @Override
     public boolean getIsIndexingStarted() {
-        return this.isIndexingStarted;
+        return isJobRunning();
+    }
+
+    /**
+     * Единственный признак идущей индексации: текущее задание ещё не завершилось.
+     */
+    private boolean isJobRunning() {
+        IndexingJob job = currentJob;
+        return job != null && !job.isDone();
     }
 
     @Override
@@ -173,9 +301,11 @@ public class IndexingServiceImpl implements IndexingService {
 
     class SiteCrawler extends RecursiveAction {
         private final List<Site> sites;
+        private final IndexingJob job;
 
-        public SiteCrawler(List<Site> sites) {
+        public SiteCrawler(List<Site> sites, IndexingJob job) {
             this.sites = sites;
+            this.job = job;
         }
 
         @Override
@@ -183,20 +313,32 @@ public class IndexingServiceImpl implements IndexingService {
         protected void compute() {
             if (sites.size() > 1) {
                 int mid = sites.size() / 2;
-                SiteCrawler left = new SiteCrawler(sites.subList(0, mid));
-                SiteCrawler right = new SiteCrawler(sites.subList(mid, sites.size()));
+                SiteCrawler left = new SiteCrawler(sites.subList(0, mid), job);
+                SiteCrawler right = new SiteCrawler(sites.subList(mid, sites.size()), job);
                 invokeAll(left, right);
             } else {
                 Site site = sites.get(0);
                 try {
-                    SiteEntity siteEntity = siteEntityRepository.save(new SiteEntity(
-                            Status.INDEXING,
-                            LocalDateTime.now(),
-                            site.getUrl(),
-                            site.getName()));
+                    SiteEntity siteEntity = crawlerSettings.isIncremental()
+                            ? siteEntityRepository.getSiteEntityByUrl(site.getUrl()) : null;
+                    if (siteEntity == null) {
+                        siteEntity = siteEntityRepository.save(new SiteEntity(
+                                Status.INDEXING,
+                                LocalDateTime.now(),
+                                site.getUrl(),
+                                site.getName()));
+                    } else {
+                        siteEntity.setStatus(Status.INDEXING);
+                        siteEntity.setStatusTime(LocalDateTime.now());
+                        siteEntity.setLastError(null);
+                        siteEntity = siteEntityRepository.save(siteEntity);
+                    }
 
                     crawlSite(site, siteEntity);
-                    if (isIndexingStopped) {
+                    invertedIndex.flushSegment();
+                    siteCounters.reconcile(siteEntity.getId());
+                    indexGeneration.next();
+                    if (job.isCancelled()) {
                         SiteEntity siteForUpdate = siteEntityRepository.getSiteEntityByUrl(site.getUrl());
                         siteForUpdate.setStatus(Status.FAILED);
                         siteForUpdate.setStatusTime(LocalDateTime.now());
@@ -208,13 +350,12 @@ public class IndexingServiceImpl implements IndexingService {
                         siteForUpdate.setStatusTime(LocalDateTime.now());
                         siteEntityRepository.save(siteForUpdate);
                     }
-                } catch (IOException e) {
+                } catch (IOException | IllegalArgumentException e) {
                     SiteEntity siteEntity = siteEntityRepository.getSiteEntityByUrl(site.getUrl());
                     siteEntity.setStatus(Status.FAILED);
                     siteEntity.setStatusTime(LocalDateTime.now());
                     siteEntity.setLastError(e.getMessage());
                     siteEntityRepository.save(siteEntity);
-                    setIndexingStarted(false);
                     throw new RuntimeException("ошибка в методе compute()" + e.getMessage());
                 } finally {
                     if (TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isSynchronizationActive()) {
@@ -226,79 +367,457 @@ public class IndexingServiceImpl implements IndexingService {
 
         @Transactional
         void crawlSite(Site site, SiteEntity siteEntity) throws MalformedURLException {
-            Set<String> visitedUrls = new HashSet<>();
-            Queue<String> urlsToCrawl = new LinkedList<>();
-            urlsToCrawl.add(site.getUrl());
-            List<PageEntity> pageEntities = new ArrayList<>();
-            while (!urlsToCrawl.isEmpty()) {
-                if (isIndexingStarted) {
-                    String currentUrl = urlsToCrawl.poll();
-                    Connection.Response response = connection(currentUrl);
-                    Document doc;
-                    try {
-                        doc = response.parse();
-                    } catch (IOException e) {
-                        throw new RuntimeException(e.getMessage() + "Ошибка при парсинге");
+            try {
+                new SitePipeline(site, siteEntity, job).run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Ошибка при обходе сайта " + site.getUrl(), e.getCause());
+            }
+        }
+    }
+
+    private record FetchedPage(String url, HttpFetcher.Response response) {
+    }
+
+    /**
+     * @param pageId id уже сохранённой страницы при повторном обходе, 0 для новой
+     */
+    private record ParsedPage(String path, int code, String html, String title, String text,
+                              String etag, String lastModified, long contentHash, int pageId) {
+    }
+
+    /**
+     * @param lemmas null, если содержимое не изменилось и нужно обновить только валидаторы
+     */
+    private record IndexedPage(PageEntity page, Map<String, Integer> lemmas) {
+    }
+
+    /**
+     * Конвейер обхода одного сайта: загрузка -> разбор и поиск ссылок -> лемматизация -> запись в БД.
+     * Стадии связаны ограниченными очередями, поэтому сеть, процессор и БД работают одновременно,
+     * а переполненная очередь притормаживает предыдущую стадию.
+     * Ссылка считается обработанной во фронтире после стадии разбора, когда из неё уже извлечены ссылки.
+     * При повторном обходе все известные страницы сайта сразу ставятся в очередь и запрашиваются условно.
+     */
+    private class SitePipeline {
+        private final SiteEntity siteEntity;
+        private final IndexingJob job;
+        private final CrawlFrontier frontier;
+        private final VisitedUrls pagePaths;
+        private final String origin;
+        private final String host;
+        private final Map<Long, PageEntityRepository.PageState> knownPages = new HashMap<>();
+        private final AtomicInteger newPages = new AtomicInteger();
+        private final AtomicInteger changedPages = new AtomicInteger();
+        private final AtomicInteger unchangedPages = new AtomicInteger();
+        private final AtomicInteger notModifiedPages = new AtomicInteger();
+        private final PipelineStage<FetchedPage> parseStage;
+        private final PipelineStage<ParsedPage> lemmaStage;
+        private final PipelineStage<IndexedPage> writeStage;
+
+        SitePipeline(Site site, SiteEntity siteEntity, IndexingJob job) {
+            CrawlerSettings.Pipeline settings = crawlerSettings.getPipeline();
+            this.siteEntity = siteEntity;
+            this.job = job;
+            this.frontier = new CrawlFrontier(site.getUrl(), newVisitedUrls());
+            this.pagePaths = newVisitedUrls();
+            String root = UrlNormalizer.normalize(site.getUrl());
+            this.origin = root.substring(0, root.length() - UrlNormalizer.pathOf(root).length());
+            this.host = UrlNormalizer.hostOf(root);
+            if (crawlerSettings.isIncremental()) {
+                pageEntityRepository.getPageStatesBySiteId(siteEntity.getId())
+                        .forEach(page -> knownPages.put(UrlHash.hash64(page.getPath()), page));
+            }
+            this.writeStage = PipelineStage.batched("write", settings.getQueueCapacity(),
+                    settings.getWriterThreads(), batchSize.getBatchSize(), this::write);
+            this.lemmaStage = PipelineStage.of("lemma", settings.getQueueCapacity(),
+                    settings.getLemmaThreads(), this::lemmatize);
+            this.parseStage = PipelineStage.of("parse", settings.getQueueCapacity(),
+                    settings.getParseThreads(), this::parse);
+        }
+
+        /**
+         * Ставит в очередь страницы из sitemap сайта с их приоритетом. При повторном обходе страницы,
+         * которые по lastmod не менялись с сохранённого Last-Modified, не запрашиваются вовсе.
+         */
+        private void seedFromSitemaps() {
+            CrawlerSettings.Sitemap settings = crawlerSettings.getSitemap();
+            Deque<String> sitemaps = new ArrayDeque<>();
+            robotsSitemaps().forEach(sitemapUrl -> addSitemap(sitemaps, sitemapUrl));
+            if (sitemaps.isEmpty()) {
+                sitemaps.add(origin + "/sitemap.xml");
+            }
+            Set<String> readSitemaps = new HashSet<>();
+            AtomicInteger seeded = new AtomicInteger();
+            AtomicInteger skipped = new AtomicInteger();
+            while (!sitemaps.isEmpty() && readSitemaps.size() < settings.getMaxFiles()
+                    && seeded.get() < settings.getMaxUrls() && !job.isCancelled()) {
+                String sitemapUrl = sitemaps.poll();
+                if (!readSitemaps.add(sitemapUrl)) {
+                    continue;
+                }
+                try (InputStream in = openPolitely(sitemapUrl)) {
+                    if (in == null) {
+                        continue;
                     }
-                    String relativePath = getRelativePathFromDocument(doc);
-                    List<Element> elements = getElementsFromDocument(doc);
-                    for (Element element : elements) {
-                        String link = element.absUrl("href");
-                        if (!visitedUrls.contains(link)) {
-                            if (!link.isEmpty()) {
-                                urlsToCrawl.add(link);
-                            }
-                            visitedUrls.add(link);
+                    SitemapParser.parse(in, entry -> {
+                        if (seeded.get() >= settings.getMaxUrls()) {
+                            return;
+                        }
+                        if (isUnchangedSince(entry)) {
+                            skipped.incrementAndGet();
+                        } else if (frontier.add(entry.loc(), entry.priority())) {
+                            seeded.incrementAndGet();
                         }
+                    }, childUrl -> addSitemap(sitemaps, childUrl));
+                } catch (IOException | XMLStreamException | IllegalArgumentException e) {
+                    logger.log(Level.WARNING, "Не удалось прочитать sitemap " + sitemapUrl + ": " + e.getMessage());
+                }
+            }
+            unchangedPages.addAndGet(skipped.get());
+            logger.info(String.format("Сайт %s: из sitemap (%d файлов) в очередь поставлено %d ссылок, без изменений %d",
+                    siteEntity.getUrl(), readSitemaps.size(), seeded.get(), skipped.get()));
+        }
+
+        /**
+         * Адреса sitemap из robots.txt и индексов sitemap приходят с сайта как есть,
+         * поэтому в очередь попадают только нормализуемые http(s)-ссылки на хост самого сайта.
+         */
+        private void addSitemap(Deque<String> sitemaps, String sitemapUrl) {
+            String normalized = UrlNormalizer.normalize(sitemapUrl);
+            if (normalized == null || !host.equals(UrlNormalizer.hostOf(normalized))) {
+                logger.fine("Пропущен адрес sitemap вне сайта или некорректный: " + sitemapUrl);
+                return;
+            }
+            sitemaps.add(normalized);
+        }
+
+        private List<String> robotsSitemaps() {
+            try (InputStream in = openPolitely(origin + "/robots.txt")) {
+                return in == null ? List.of()
+                        : SitemapParser.sitemapsFromRobots(new InputStreamReader(in, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Не удалось прочитать robots.txt сайта " + origin + ": " + e.getMessage());
+                return List.of();
+            }
+        }
+
+        /**
+         * Сохранённая страница, lastmod которой в sitemap не новее её Last-Modified,
+         * сразу отмечается посещённой.
+         */
+        private boolean isUnchangedSince(SitemapParser.Entry entry) {
+            String normalized = UrlNormalizer.normalize(entry.loc());
+            if (normalized == null || entry.lastModified() == null || !host.equals(UrlNormalizer.hostOf(normalized))) {
+                return false;
+            }
+            String path = UrlNormalizer.pathOf(normalized);
+            PageEntityRepository.PageState known = knownPages.get(UrlHash.hash64(path));
+            if (known == null || known.getLastModified() == null) {
+                return false;
+            }
+            try {
+                Instant lastModified = ZonedDateTime.parse(known.getLastModified(),
+                        DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                if (entry.lastModified().isAfter(lastModified)) {
+                    return false;
+                }
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+            frontier.markVisited(normalized);
+            return pagePaths.add(path);
+        }
+
+        private InputStream openPolitely(String url) throws IOException {
+            String urlHost = UrlNormalizer.hostOf(url);
+            try {
+                hostPoliteness.acquire(urlHost);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            try {
+                return httpFetcher.openStream(url, crawlerSettings.getSitemap().getMaxBytes());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                hostPoliteness.release(urlHost);
+            }
+        }
+
+        private VisitedUrls newVisitedUrls() {
+            return new VisitedUrls(crawlerSettings.getVisitedBloomThreshold(),
+                    crawlerSettings.getVisitedBloomCapacity(), crawlerSettings.getVisitedBloomFalsePositiveRate());
+        }
+
+        void run() throws InterruptedException, ExecutionException {
+            siteCounters.crawlStarted(siteEntity.getId(), () -> frontier.size() + parseStage.size()
+                    + lemmaStage.size() + writeStage.size());
+            metrics.queue(siteEntity.getUrl(), "frontier", frontier::size);
+            metrics.queue(siteEntity.getUrl(), "parse", parseStage::size);
+            metrics.queue(siteEntity.getUrl(), "lemma", lemmaStage::size);
+            metrics.queue(siteEntity.getUrl(), "write", writeStage::size);
+            try {
+                if (crawlerSettings.getSitemap().isEnabled()) {
+                    seedFromSitemaps();
+                }
+                knownPages.values().forEach(page -> frontier.add(origin + page.getPath()));
+                if (crawlerSettings.getExecutor() == CrawlerSettings.Executor.VIRTUAL) {
+                    fetchWithVirtualThreads();
+                } else {
+                    fetchWithWorkers();
+                }
+            } finally {
+                closeStages();
+                siteCounters.crawlFinished(siteEntity.getId());
+                metrics.queuesClosed(siteEntity.getUrl());
+                logger.info(String.format("Сайт %s: новых страниц %d, изменённых %d, без изменений %d (304: %d)",
+                        siteEntity.getUrl(), newPages.get(), changedPages.get(),
+                        unchangedPages.get() + notModifiedPages.get(), notModifiedPages.get()));
+            }
+        }
+
+        /**
+         * После отмены задания разбор и лемматизация бросают свои очереди,
+         * а всё, что уже дошло до очереди записи, дописывается.
+         */
+        private void closeStages() throws InterruptedException {
+            if (job.isCancelled()) {
+                long timeoutMs = crawlerSettings.getStopTimeoutMs();
+                if (!parseStage.cancelAndAwait(timeoutMs) || !lemmaStage.cancelAndAwait(timeoutMs)) {
+                    logger.warning("Стадии разбора и лемматизации сайта " + siteEntity.getUrl()
+                            + " не остановились за " + timeoutMs + " мс");
+                }
+            } else {
+                parseStage.closeAndAwait();
+                lemmaStage.closeAndAwait();
+            }
+            writeStage.closeAndAwait();
+        }
+
+        private void fetchWithWorkers() throws InterruptedException, ExecutionException {
+            int workers = Math.max(1, crawlerSettings.getWorkersPerSite());
+            ExecutorService executor = Executors.newFixedThreadPool(workers);
+            job.register(executor);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < workers; i++) {
+                    futures.add(executor.submit(this::fetchWorker));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (CancellationException e) {
+                        // пул остановлен отменой задания
                     }
-                    if (pageEntityRepository.getFirstByPath(relativePath) == null) {
-                        PageEntity page = new PageEntity(siteEntity, relativePath, response.statusCode(), doc.html());
-                        pageEntities.add(page);
-                        if (pageEntities.size() == batchSize.getBatchSize()) {
-                            pageEntityRepository.saveAll(pageEntities);
-                            for (PageEntity savedPage : pageEntities) {
-                                lemmaService.saveLemma(savedPage, siteEntity);
-                            }
-                            pageEntities.clear();
+                }
+            } finally {
+                job.unregister(executor);
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Каждая загрузка выполняется в своём виртуальном потоке,
+         * число одновременных загрузок ограничено inFlightPages.
+         */
+        private void fetchWithVirtualThreads() throws InterruptedException {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                job.register(executor);
+                try {
+                    while (!job.isCancelled() && !frontier.isExhausted()) {
+                        String currentUrl = frontier.poll(100, TimeUnit.MILLISECONDS);
+                        if (currentUrl == null) {
+                            continue;
+                        }
+                        inFlightPages.acquire();
+                        try {
+                            executor.submit(() -> {
+                                try {
+                                    fetch(currentUrl);
+                                } finally {
+                                    inFlightPages.release();
+                                }
+                            });
+                        } catch (RejectedExecutionException e) {
+                            inFlightPages.release();
+                            frontier.complete();
                         }
                     }
-                } else {
-                    break;
+                } finally {
+                    job.unregister(executor);
+                }
+            }
+        }
+
+        private void fetchWorker() {
+            while (!job.isCancelled() && !frontier.isExhausted()) {
+                String currentUrl;
+                try {
+                    currentUrl = frontier.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
                 }
+                if (currentUrl != null) {
+                    fetch(currentUrl);
+                }
+            }
+        }
 
+        private void fetch(String currentUrl) {
+            try {
+                String host = UrlNormalizer.hostOf(currentUrl);
+                String path = UrlNormalizer.pathOf(currentUrl);
+                PageEntityRepository.PageState known = knownPages.get(UrlHash.hash64(path));
+                HttpFetcher.Response response;
+                hostPoliteness.acquire(host);
+                long start = System.nanoTime();
+                try {
+                    response = fetchPage(currentUrl, known);
+                } catch (IOException e) {
+                    metrics.fetched(host, -1, System.nanoTime() - start);
+                    throw e;
+                } finally {
+                    hostPoliteness.release(host);
+                }
+                metrics.fetched(host, response.statusCode(), System.nanoTime() - start);
+                siteCounters.pageFetched(siteEntity.getId());
+                if (response.statusCode() == HTTP_NOT_MODIFIED) {
+                    pagePaths.add(path);
+                    notModifiedPages.incrementAndGet();
+                    frontier.complete();
+                    return;
+                }
+                if (response.body() == null) {
+                    logger.fine("Пропущена страница не-HTML или больше допустимого размера: " + currentUrl);
+                    frontier.complete();
+                    return;
+                }
+                parseStage.put(new FetchedPage(currentUrl, response));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                frontier.complete();
+            } catch (RuntimeException | IOException e) {
+                if (!job.isCancelled()) {
+                    logger.log(Level.WARNING, "Ошибка при загрузке страницы " + currentUrl, e);
+                }
+                frontier.complete();
+            }
+        }
+
+        private void parse(FetchedPage fetchedPage) {
+            try {
+                HttpFetcher.Response response = fetchedPage.response();
+                String location = normalizedLocation(response.url());
+                long start = System.nanoTime();
+                String html = HtmlScanner.decode(response.body(), response.charset());
+                HtmlScanner.Result scanned = HtmlScanner.scan(html, response.url());
+                metrics.parsed(System.nanoTime() - start);
+                frontier.markVisited(location);
+                scanned.links().forEach(frontier::add);
+                String relativePath = UrlNormalizer.pathOf(location);
+                if (pagePaths.add(relativePath)) {
+                    accept(response, html, scanned, relativePath);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.WARNING, "Ошибка при парсинге страницы " + fetchedPage.url(), e);
+            } finally {
+                frontier.complete();
+            }
+        }
+
+        /**
+         * Новые и изменённые страницы отправляет на лемматизацию; у страницы с тем же хэшем
+         * содержимого обновляются только валидаторы, если сервер прислал новые.
+         */
+        private void accept(HttpFetcher.Response response, String html, HtmlScanner.Result scanned, String relativePath)
+                throws InterruptedException {
+            String title = scanned.title();
+            String text = scanned.text();
+            long contentHash = contentHash(title, text);
+            String etag = response.header("ETag");
+            String lastModified = response.header("Last-Modified");
+            PageEntityRepository.PageState known = knownPages.get(UrlHash.hash64(relativePath));
+            if (known != null && known.getContentHash() == contentHash) {
+                unchangedPages.incrementAndGet();
+                if (!Objects.equals(known.getEtag(), etag) || !Objects.equals(known.getLastModified(), lastModified)) {
+                    PageEntity page = new PageEntity(known.getId(), siteEntity, relativePath, response.statusCode(), null);
+                    page.setEtag(etag);
+                    page.setLastModified(lastModified);
+                    writeStage.put(new IndexedPage(page, null));
+                }
+                return;
+            }
+            (known == null ? newPages : changedPages).incrementAndGet();
+            lemmaStage.put(new ParsedPage(relativePath, response.statusCode(), html, title, text,
+                    etag, lastModified, contentHash, known == null ? 0 : known.getId()));
+        }
+
+        private void lemmatize(ParsedPage parsedPage) {
+            PageEntity page = new PageEntity(parsedPage.pageId(), siteEntity, parsedPage.path(), parsedPage.code(),
+                    parsedPage.html());
+            page.setTitle(PageEntity.truncateTitle(parsedPage.title()));
+            page.setPlainText(parsedPage.text());
+            page.setEtag(parsedPage.etag());
+            page.setLastModified(parsedPage.lastModified());
+            page.setContentHash(parsedPage.contentHash());
+            long start = System.nanoTime();
+            Map<String, Integer> lemmas = lemmaService.lemmasAndCount(parsedPage.text());
+            metrics.lemmatized(System.nanoTime() - start);
+            try {
+                writeStage.put(new IndexedPage(page, lemmas));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
-    }
 
-    private String getRelativePathFromDocument(Document document) throws MalformedURLException {
-        return new File(new URL(document.location()).getPath()).getPath();
+        private void write(List<IndexedPage> indexedPages) {
+            Map<PageEntity, Map<String, Integer>> lemmasByPage = new IdentityHashMap<>();
+            List<PageEntity> validatorsOnly = new ArrayList<>();
+            for (IndexedPage indexedPage : indexedPages) {
+                if (indexedPage.lemmas() == null) {
+                    validatorsOnly.add(indexedPage.page());
+                } else {
+                    lemmasByPage.put(indexedPage.page(), indexedPage.lemmas());
+                }
+            }
+            if (!lemmasByPage.isEmpty()) {
+                lemmaService.saveLemmas(siteEntity, lemmasByPage);
+            }
+            indexBatchWriter.updateValidators(validatorsOnly);
+        }
     }
 
-    private Connection.Response connection(String urlToConnection) {
-        try {
-            return Jsoup.connect(urlToConnection)
-                    .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) " +
-                            "AppleWebKit/537.36 (KHTML, like Gecko) " +
-                            "Chrome/67.0.3396.99 Safari/537.36")
-                    .ignoreHttpErrors(true)
-                    .ignoreContentType(true)
-                    .referrer("https://www.google.com")
-                    .execute();
-        } catch (IOException e) {
-            logger.log(Level.WARNING, "Ошибка при подключении к  : " + e.getMessage());
-            throw new RuntimeException(urlToConnection);
+    /**
+     * Нормализованный адрес, с которого фактически получен документ (с учётом перенаправлений).
+     */
+    private String normalizedLocation(String responseUrl) {
+        String location = UrlNormalizer.normalize(responseUrl);
+        if (location == null) {
+            throw new IllegalArgumentException("Некорректный адрес страницы: " + responseUrl);
         }
+        return location;
     }
 
-    private List<Element> getElementsFromDocument(Document document) {
-        String baseUrl = document.baseUri();
-        return document.select(String.format("a[href^=%s], a[href^=/]", baseUrl))
-                .stream()
-                .filter(link -> {
-                    String absUrl = link.absUrl("href");
-                    return absUrl.startsWith(baseUrl);
-                })
-                .toList();
+    /**
+     * @param known сохранённая страница: если задана, запрос делается условным по её валидаторам
+     */
+    private HttpFetcher.Response fetchPage(String url, PageEntityRepository.PageState known)
+            throws IOException, InterruptedException {
+        Map<String, String> headers = new HashMap<>();
+        if (known != null && known.getEtag() != null) {
+            headers.put("If-None-Match", known.getEtag());
+        }
+        if (known != null && known.getLastModified() != null) {
+            headers.put("If-Modified-Since", known.getLastModified());
+        }
+        return httpFetcher.fetch(url, headers);
     }
 }
 
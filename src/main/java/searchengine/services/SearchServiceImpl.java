@@ -1,87 +1,285 @@
 package searchengine.services;
 
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.safety.Safelist;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
-import org.tartarus.snowball.ext.RussianStemmer;
+import searchengine.config.SearchSettings;
+import searchengine.dto.indexing.ErrorOperation;
+import searchengine.dto.search.SearchItem;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.Lemma;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageContentStore;
+import searchengine.repository.PageEntityRepository;
+import searchengine.repository.SiteEntityRepository;
+import searchengine.services.abstracts.LemmaService;
+import searchengine.services.abstracts.SearchService;
+import searchengine.services.index.InvertedIndex;
+import searchengine.services.index.PostingCursor;
+import searchengine.services.search.SearchResultCache;
+import searchengine.services.search.TopPages;
+import searchengine.services.snippet.SnippetBuilder;
+import searchengine.services.statistics.SearchEngineMetrics;
+import searchengine.services.statistics.SiteCounters;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
-public class SearchServiceImpl {
+public class SearchServiceImpl implements SearchService {
 
-    private final LuceneMorphology luceneMorphology;
-    private static final String REGEXP_TEXT = "\\s*(\\s|\\?|\\||»|«|\\*|,|!|\\.)\\s*";
-    private static final String REGEXP_WORD = "[а-яА-ЯёЁ]+";
+    private final SnippetBuilder snippetBuilder;
+    private final PageContentStore pageContentStore;
+    private final LemmaService lemmaService;
+    private final SiteEntityRepository siteEntityRepository;
+    private final PageEntityRepository pageEntityRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final SearchSettings searchSettings;
+    private final InvertedIndex invertedIndex;
+    private final SearchEngineMetrics metrics;
+    private final SearchResultCache resultCache;
+    private final SiteCounters siteCounters;
+    private static final int IN_CHUNK_SIZE = 1000;
 
-    public SearchServiceImpl(LuceneMorphology luceneMorphology) {
-        this.luceneMorphology = luceneMorphology;
+    public SearchServiceImpl(SnippetBuilder snippetBuilder, LemmaService lemmaService,
+                             SiteEntityRepository siteEntityRepository, PageEntityRepository pageEntityRepository,
+                             LemmaRepository lemmaRepository, IndexRepository indexRepository,
+                             SearchSettings searchSettings, InvertedIndex invertedIndex,
+                             PageContentStore pageContentStore, SearchEngineMetrics metrics,
+                             SearchResultCache resultCache, SiteCounters siteCounters) {
+        this.snippetBuilder = snippetBuilder;
+        this.lemmaService = lemmaService;
+        this.siteEntityRepository = siteEntityRepository;
+        this.pageEntityRepository = pageEntityRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexRepository = indexRepository;
+        this.searchSettings = searchSettings;
+        this.invertedIndex = invertedIndex;
+        this.pageContentStore = pageContentStore;
+        this.metrics = metrics;
+        this.resultCache = resultCache;
+        this.siteCounters = siteCounters;
     }
 
-    public String getSnippet(String content, String textQuery) {
+    @Override
+    public Object search(String query, String siteUrl, int offset, int limit) {
+        long started = System.nanoTime();
+        List<SiteEntity> sitesToSearch;
+        if (siteUrl == null || siteUrl.isBlank()) {
+            sitesToSearch = siteEntityRepository.getSiteEntities();
+        } else {
+            SiteEntity site = siteEntityRepository.getSiteEntityByUrl(siteUrl);
+            if (site == null) {
+                return new ErrorOperation("Указанный сайт не найден");
+            }
+            sitesToSearch = List.of(site);
+        }
 
-        String textForSearchQuery = Jsoup.parse(content).getElementsContainingOwnText(textQuery).text();
-        Pattern pattern = Pattern.compile(textQuery);
-        Matcher matcher = pattern.matcher(textForSearchQuery);
-        String snippet;
-        if (matcher.find()) {
-            int beginIndex = matcher.start() > 80 ?
-                    textForSearchQuery.lastIndexOf(' ', matcher.start() - 60) : 0;
-            int endIndex = Math.min(beginIndex + matcher.end() + 160, textForSearchQuery.length());
-            snippet = textForSearchQuery.substring(beginIndex, endIndex);
-            snippet = StringUtils.replace(snippet, textQuery, "<b>" + textQuery + "</b>");
+        long stageStart = System.nanoTime();
+        Set<String> queryLemmas = lemmaService.lemmasAndCount(query).keySet();
+        stage("lemmas", stageStart);
+        SearchResultCache.Query key = resultCache.query(queryLemmas,
+                siteUrl == null || siteUrl.isBlank() ? "" : siteUrl);
+        int depth = (int) Math.max(searchSettings.getRankDepth(), Math.min(Integer.MAX_VALUE, (long) offset + limit));
+        SearchResultCache.Ranking ranking = resultCache.ranked(key, depth,
+                rankDepth -> rank(sitesToSearch, queryLemmas, rankDepth));
 
-        } else {
-            textQuery = textQuery.trim();
-            String[] words = textQuery.toLowerCase().split(REGEXP_TEXT);
-
-            StringBuilder builderSnippet = new StringBuilder();
-            RussianStemmer russianStemmer = new RussianStemmer();
-
-            for (String word : words) {
-                if (wordCheck(word)) {
-                    russianStemmer.setCurrent(word);
-                    if (russianStemmer.stem()) {
-                        word = russianStemmer.getCurrent() + ".*?\\b";
-                    }
-                    String textForSearchWord = Jsoup.parse(content).getElementsMatchingOwnText(word).text();
-                    pattern = Pattern.compile(word, Pattern.CASE_INSENSITIVE);
-                    matcher = pattern.matcher(textForSearchWord);
-                    if (matcher.find()) {
-                        int beginIndex = matcher.start() > 35 ?
-                                textForSearchWord.lastIndexOf(' ', matcher.start() - 15) : 0;
-                        int endIndex = Math.min(matcher.start() + 80, textForSearchWord.length());
-                        String result = matcher.group();
-                        String snippetWord = textForSearchWord.substring(beginIndex, endIndex);
-                        snippetWord = StringUtils.replace(snippetWord, result, "<b>" + result + "</b>");
-                        builderSnippet.append(snippetWord).append("...");
-                    }
+        SearchResponse response = new SearchResponse();
+        response.setResult(true);
+        response.setCount(ranking.total());
+        response.setData(resultCache.items(key, offset, limit,
+                () -> buildItems(ranking.top(), offset, limit, queryLemmas)));
+        stage("total", started);
+        return response;
+    }
+
+    /**
+     * depth лучших страниц всех сайтов по убыванию релевантности и общее число найденных страниц.
+     */
+    private SearchResultCache.Ranking rank(List<SiteEntity> sites, Set<String> queryLemmas, int depth) {
+        long stageStart = System.nanoTime();
+        TopPages top = new TopPages(depth);
+        int total = 0;
+        for (SiteEntity site : sites) {
+            total += findPages(site, queryLemmas, top);
+        }
+        stageStart = stage("match", stageStart);
+        List<Map.Entry<Integer, Float>> ranked = top.drain();
+        stage("rank", stageStart);
+        return new SearchResultCache.Ranking(ranked, total, depth);
+    }
+
+    /**
+     * Записывает время стадии поиска и возвращает начало следующей.
+     */
+    private long stage(String name, long stageStart) {
+        long now = System.nanoTime();
+        metrics.searchStage(name, now - stageStart);
+        return now;
+    }
+
+    /**
+     * Отбирает в top страницы сайта, содержащие все леммы запроса, по абсолютной релевантности
+     * и возвращает число таких страниц.
+     * Слишком частые леммы отбрасываются, пересечение начинается с самой редкой,
+     * и каждая следующая лемма запрашивается только среди уже найденных страниц,
+     * поэтому объём работы определяется самым коротким списком страниц.
+     */
+    private int findPages(SiteEntity site, Set<String> queryLemmas, TopPages top) {
+        if (queryLemmas.isEmpty()) {
+            return 0;
+        }
+        List<Lemma> lemmas = new ArrayList<>(lemmaRepository.getLemmasBySiteIdAndLemmaIn(site.getId(), queryLemmas));
+        if (lemmas.size() < queryLemmas.size()) {
+            return 0;
+        }
+        lemmas.sort(Comparator.comparingInt(Lemma::getFrequency));
+        double maxFrequency = searchSettings.getMaxFrequencyShare() * siteCounters.snapshot(site.getId()).pages();
+        List<Lemma> selectiveLemmas = lemmas.stream()
+                .filter(lemma -> lemma.getFrequency() <= maxFrequency)
+                .toList();
+        if (selectiveLemmas.isEmpty()) {
+            selectiveLemmas = lemmas.subList(0, 1);
+        }
+        if (invertedIndex.isReady()) {
+            return selectiveLemmas.size() == 1
+                    ? rankInMemory(selectiveLemmas.get(0), top)
+                    : intersectInMemory(selectiveLemmas, top);
+        }
+
+        Map<Integer, Float> relevance = new HashMap<>();
+        for (IndexRepository.Posting posting : indexRepository.getPostingsByLemmaId(selectiveLemmas.get(0).getId())) {
+            relevance.merge(posting.getPageId(), posting.getRank(), Float::sum);
+        }
+        for (Lemma lemma : selectiveLemmas.subList(1, selectiveLemmas.size())) {
+            if (relevance.isEmpty()) {
+                break;
+            }
+            List<Integer> pageIds = new ArrayList<>(relevance.keySet());
+            Map<Integer, Float> intersection = new HashMap<>();
+            for (int from = 0; from < pageIds.size(); from += IN_CHUNK_SIZE) {
+                List<Integer> chunk = pageIds.subList(from, Math.min(from + IN_CHUNK_SIZE, pageIds.size()));
+                for (IndexRepository.Posting posting : indexRepository.getPostingsByLemmaIdAndPageIdIn(lemma.getId(), chunk)) {
+                    intersection.put(posting.getPageId(), relevance.get(posting.getPageId()) + posting.getRank());
                 }
             }
-            snippet = builderSnippet.toString();
+            relevance = intersection;
+        }
+        relevance.forEach(top::offer);
+        return relevance.size();
+    }
+
+    /**
+     * Страницы одной леммы из обратного индекса. Число страниц берётся из её frequency без обхода списка,
+     * а обход прекращается, как только даже наибольший ранг леммы не проходит в top.
+     */
+    private int rankInMemory(Lemma lemma, TopPages top) {
+        float maxRank = invertedIndex.maxRank(lemma.getId());
+        PostingCursor cursor = invertedIndex.cursor(lemma.getId());
+        while (cursor.next() && !top.excludes(maxRank, cursor.doc())) {
+            top.offer(cursor.doc(), cursor.rank());
         }
-        return snippet;
+        return lemma.getFrequency();
     }
 
+    /**
+     * Пересечение списков из обратного индекса (память и сегменты): самый короткий список ведёт,
+     * остальные догоняют его через точки пропуска, не декодируя лишнего. Найденные страницы считаются все,
+     * а релевантность - только у тех, кому сумма ранга ведущей леммы и наибольших рангов остальных
+     * ещё позволяет попасть в top.
+     */
+    private int intersectInMemory(List<Lemma> lemmas, TopPages top) {
+        List<Integer> lemmaIds = lemmas.stream()
+                .map(Lemma::getId)
+                .sorted(Comparator.comparingInt(invertedIndex::docCount))
+                .toList();
+        List<PostingCursor> cursors = lemmaIds.stream().map(invertedIndex::cursor).toList();
+        float othersMaxRank = 0;
+        for (Integer lemmaId : lemmaIds.subList(1, lemmaIds.size())) {
+            othersMaxRank += invertedIndex.maxRank(lemmaId);
+        }
+        PostingCursor lead = cursors.get(0);
+        List<PostingCursor> others = cursors.subList(1, cursors.size());
+        int count = 0;
+        int target = 0;
+        while (lead.advance(target)) {
+            int pageId = lead.doc();
+            boolean matched = true;
+            target = pageId + 1;
+            for (PostingCursor cursor : others) {
+                if (!cursor.advance(pageId)) {
+                    return count;
+                }
+                if (cursor.doc() != pageId) {
+                    target = cursor.doc();
+                    matched = false;
+                    break;
+                }
+            }
+            if (!matched) {
+                continue;
+            }
+            count++;
+            float sum = lead.rank();
+            if (!top.excludes(sum + othersMaxRank, pageId)) {
+                for (PostingCursor cursor : others) {
+                    sum += cursor.rank();
+                }
+                top.offer(pageId, sum);
+            }
+        }
+        return count;
+    }
 
-    public boolean wordCheck(String word) {
+    private List<SearchItem> buildItems(List<Map.Entry<Integer, Float>> ranked, int offset, int limit,
+                                        Set<String> queryLemmas) {
+        if (ranked.isEmpty() || offset >= ranked.size()) {
+            return List.of();
+        }
+        long stageStart = System.nanoTime();
+        float maxRelevance = ranked.get(0).getValue();
+        List<Map.Entry<Integer, Float>> window = ranked.subList(offset,
+                (int) Math.min((long) offset + limit, ranked.size()));
+        Map<Integer, PageEntity> pages = pageEntityRepository
+                .findAllById(window.stream().map(Map.Entry::getKey).toList())
+                .stream()
+                .collect(Collectors.toMap(PageEntity::getId, Function.identity()));
+        Map<Integer, String> texts = pageContentStore.getPlainTexts(pages.keySet());
+        stageStart = stage("load", stageStart);
 
-        if (word.matches(REGEXP_WORD)) {
-            List<String> wordBaseForms =
-                    luceneMorphology.getMorphInfo(word);
-            return !wordBaseForms.get(0).endsWith("ПРЕДЛ") && (!wordBaseForms.get(0).endsWith("СОЮЗ")) &&
-                    (!wordBaseForms.get(0).endsWith("ЧАСТ")) && (!wordBaseForms.get(0).endsWith("МЕЖД"));
+        List<SearchItem> items = new ArrayList<>();
+        for (Map.Entry<Integer, Float> entry : window) {
+            PageEntity page = pages.get(entry.getKey());
+            if (page == null) {
+                continue;
+            }
+            SiteEntity site = page.getSiteId();
+            SearchItem item = new SearchItem();
+            item.setSite(site.getUrl().endsWith("/") ? site.getUrl().substring(0, site.getUrl().length() - 1) : site.getUrl());
+            item.setSiteName(site.getName());
+            item.setUri(page.getPath());
+            item.setTitle(page.getTitle());
+            item.setSnippet(getSnippet(texts.get(page.getId()), queryLemmas));
+            item.setRelevance(entry.getValue() / maxRelevance);
+            items.add(item);
         }
-        return false;
+        stage("snippets", stageStart);
+        return items;
     }
 
-    public String removeHtmlTags(String html) {
-        Document doc = Jsoup.parse(html);
-        return Jsoup.clean(doc.body().html(), Safelist.none());
+    /**
+     * Сниппет по тексту страницы с подсветкой слов, чьи леммы есть в запросе.
+     */
+    @Override
+    public String getSnippet(String text, Set<String> queryLemmas) {
+        return snippetBuilder.build(text, queryLemmas);
     }
 }
@@ -8,23 +8,25 @@ import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
 import searchengine.model.SiteEntity;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageEntityRepository;
 import searchengine.repository.SiteEntityRepository;
+import searchengine.services.abstracts.IndexingService;
 import searchengine.services.abstracts.StatisticsService;
+import searchengine.services.statistics.SiteCounters;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
+/**
+ * Статистика собирается из строк site и счётчиков в памяти ({@link SiteCounters}),
+ * таблицы page и lemma при этом не читаются.
+ */
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
 
-    private final Random random = new Random();
-    private final LemmaRepository lemmaRepository;
-    private final PageEntityRepository pageEntityRepository;
     private final SiteEntityRepository siteEntityRepository;
+    private final SiteCounters siteCounters;
+    private final IndexingService indexingService;
     private final SitesList sites;
 
     @Override
@@ -32,23 +34,26 @@ public class StatisticsServiceImpl implements StatisticsService {
 
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.getSites().size());
-        total.setIndexing(true);
+        total.setIndexing(indexingService.getIsIndexingStarted());
 
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
         List<SiteEntity> sitesList = siteEntityRepository.getSiteEntities();
         for (SiteEntity site : sitesList) {
+            SiteCounters.Snapshot counters = siteCounters.snapshot(site.getId());
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setName(site.getName());
             item.setUrl(site.getUrl());
-            int pages = pageEntityRepository.countPagesBySiteId(site.getId());
-            int lemmas = lemmaRepository.countLemmasBySiteId(site.getId());
-            item.setPages(pages);
-            item.setLemmas(lemmas);
+            item.setPages(counters.pages());
+            item.setLemmas(counters.lemmas());
+            item.setPagesPerSecond(counters.pagesPerSecond());
+            item.setQueueDepth(counters.queueDepth());
             item.setStatus(site.getStatus().name());
             item.setError(site.getLastError());
             item.setStatusTime(site.getStatusTime());
-            total.setPages(total.getPages() + pages);
-            total.setLemmas(total.getLemmas() + lemmas);
+            total.setPages(total.getPages() + counters.pages());
+            total.setLemmas(total.getLemmas() + counters.lemmas());
+            total.setPagesPerSecond(total.getPagesPerSecond() + counters.pagesPerSecond());
+            total.setQueueDepth(total.getQueueDepth() + counters.queueDepth());
             detailed.add(item);
         }
 
@@ -4,15 +4,15 @@ import lombok.Getter;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import searchengine.config.Site;
-import searchengine.dto.indexing.IndexingInfo;
 import searchengine.model.SiteEntity;
 
-import javax.persistence.Index;
+import jakarta.persistence.Index;
 
 @Service
 public interface IndexingService {
     Object startIndexing();
     Object stopIndexing();
+    Object getIndexingJob(String jobId);
     Object indexPage(String address, Site site);
     boolean getIsIndexingStarted();
     boolean getIsIndexingStopped();
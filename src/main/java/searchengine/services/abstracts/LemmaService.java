@@ -5,7 +5,6 @@ import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 
-import java.util.List;
 import java.util.Map;
 
 @Service
@@ -13,7 +12,9 @@ import java.util.Map;
 public interface LemmaService {
     String[] arrayContainsRussianWords(String text);
     Map<String, Integer> lemmasAndCount(String text);
-    boolean anyWordBaseBelongToParticle(List<String> wordBaseForms);
-    boolean hasParticleProperty(String wordBase);
+    Map<String, Integer> lemmasAndCountFromHtml(String html);
+    Map<String, Integer> lemmasOfPage(PageEntity page);
     void saveLemma(PageEntity page, SiteEntity site);
+    void saveLemma(PageEntity page, SiteEntity site, Map<String, Integer> lemmasFromPage);
+    void saveLemmas(SiteEntity site, Map<PageEntity, Map<String, Integer>> lemmasByPage);
 }
@@ -2,7 +2,10 @@ package searchengine.services.abstracts;
 
 import org.springframework.stereotype.Service;
 
+import java.util.Set;
+
 @Service
 public interface SearchService {
-    String getSnippet(String content, String textQuery);
+    Object search(String query, String site, int offset, int limit);
+    String getSnippet(String text, Set<String> queryLemmas);
 }
@@ -0,0 +1,46 @@
+package searchengine.services.crawler;
+
+/**
+ * Фильтр Блума над уже посчитанными 64-битными хэшами: k позиций получаются
+ * двойным хэшированием из двух половин хэша. Не потокобезопасен.
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedSize           сколько элементов ожидается
+     * @param falsePositiveRate      допустимая доля ложных срабатываний
+     */
+    public BloomFilter(long expectedSize, double falsePositiveRate) {
+        long size = Math.max(64, (long) Math.ceil(-expectedSize * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (size + 63) >>> 6)];
+        this.bitCount = (long) bits.length << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedSize * Math.log(2)));
+    }
+
+    /**
+     * @return true, если хэш (вероятно) не встречался раньше
+     */
+    public boolean add(long hash) {
+        int low = (int) hash;
+        int high = (int) (hash >>> 32);
+        boolean added = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long combined = (low + (long) i * high) & Long.MAX_VALUE;
+            long bit = combined % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    public long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+}
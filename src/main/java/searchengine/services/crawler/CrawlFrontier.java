@@ -0,0 +1,89 @@
+package searchengine.services.crawler;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Очередь ссылок одного сайта, общая для всех потоков обхода.
+ * Ссылки нормализуются ({@link UrlNormalizer}), ссылки на другие хосты отбрасываются,
+ * и каждая ссылка попадает в очередь не более одного раза.
+ * Ссылки выдаются по убыванию приоритета (корень сайта - 1.0, страницы из sitemap - их priority,
+ * найденные на страницах - {@link SitemapParser#DEFAULT_PRIORITY}), при равном приоритете - в порядке добавления.
+ * Обход считается завершённым, когда очередь пуста и ни одна
+ * взятая из неё ссылка не находится в обработке.
+ */
+public class CrawlFrontier {
+    private static final double ROOT_PRIORITY = 1.0;
+    private final BlockingQueue<QueuedUrl> queue = new PriorityBlockingQueue<>();
+    private final VisitedUrls visitedUrls;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final String host;
+
+    public CrawlFrontier(String rootUrl) {
+        this(rootUrl, new VisitedUrls());
+    }
+
+    public CrawlFrontier(String rootUrl, VisitedUrls visitedUrls) {
+        String root = UrlNormalizer.normalize(rootUrl);
+        if (root == null) {
+            throw new IllegalArgumentException("Некорректный адрес сайта: " + rootUrl);
+        }
+        this.visitedUrls = visitedUrls;
+        this.host = UrlNormalizer.hostOf(root);
+        add(root, ROOT_PRIORITY);
+    }
+
+    public boolean add(String url) {
+        return add(url, SitemapParser.DEFAULT_PRIORITY);
+    }
+
+    public boolean add(String url, double priority) {
+        String normalized = UrlNormalizer.normalize(url);
+        if (normalized == null || !host.equals(UrlNormalizer.hostOf(normalized)) || !visitedUrls.add(normalized)) {
+            return false;
+        }
+        pending.incrementAndGet();
+        queue.add(new QueuedUrl(normalized, priority, sequence.getAndIncrement()));
+        return true;
+    }
+
+    /**
+     * Отмечает ссылку посещённой без постановки в очередь, например адрес, на который произошло перенаправление.
+     */
+    public void markVisited(String normalizedUrl) {
+        visitedUrls.add(normalizedUrl);
+    }
+
+    /**
+     * Возвращает следующую ссылку или null, если за время ожидания
+     * ничего не появилось. После обработки ссылки нужно вызвать {@link #complete()}.
+     */
+    public String poll(long timeout, TimeUnit unit) throws InterruptedException {
+        QueuedUrl queued = queue.poll(timeout, unit);
+        return queued == null ? null : queued.url();
+    }
+
+    public void complete() {
+        pending.decrementAndGet();
+    }
+
+    public boolean isExhausted() {
+        return pending.get() == 0;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    private record QueuedUrl(String url, double priority, long sequence) implements Comparable<QueuedUrl> {
+        @Override
+        public int compareTo(QueuedUrl other) {
+            int byPriority = Double.compare(other.priority, priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package searchengine.services.crawler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничивает нагрузку на хост: не больше maxConnections запросов
+ * одновременно и не чаще одного начала запроса за delayMs.
+ */
+public class HostPoliteness {
+    private final int maxConnections;
+    private final long delayNanos;
+    private final Map<String, HostSlot> hosts = new ConcurrentHashMap<>();
+
+    public HostPoliteness(int maxConnections, long delayMs) {
+        this.maxConnections = Math.max(1, maxConnections);
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+    }
+
+    public void acquire(String host) throws InterruptedException {
+        HostSlot slot = hosts.computeIfAbsent(host, h -> new HostSlot(maxConnections));
+        slot.permits.acquire();
+        try {
+            long waitNanos = slot.reserveStart(delayNanos);
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        } catch (InterruptedException e) {
+            slot.permits.release();
+            throw e;
+        }
+    }
+
+    public void release(String host) {
+        HostSlot slot = hosts.get(host);
+        if (slot != null) {
+            slot.permits.release();
+        }
+    }
+
+    private static class HostSlot {
+        private final Semaphore permits;
+        private final AtomicLong nextStart = new AtomicLong(System.nanoTime());
+
+        HostSlot(int maxConnections) {
+            this.permits = new Semaphore(maxConnections, true);
+        }
+
+        long reserveStart(long delayNanos) {
+            long now = System.nanoTime();
+            while (true) {
+                long next = nextStart.get();
+                long start = Math.max(now, next);
+                if (nextStart.compareAndSet(next, start + delayNanos)) {
+                    return start - now;
+                }
+            }
+        }
+    }
+}
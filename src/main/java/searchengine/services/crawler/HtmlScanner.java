@@ -0,0 +1,327 @@
+package searchengine.services.crawler;
+
+import org.jsoup.parser.Parser;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Однопроходный разбор HTML на уровне тегов для обхода сайта: ссылки a[href], заголовок
+ * и видимый текст извлекаются без построения DOM. Содержимое script, style и подобных
+ * элементов пропускается, блочные теги разделяют текст пробелом, пробелы схлопываются -
+ * текст совпадает с тем, что даёт Document.text() у jsoup для обычной разметки.
+ */
+public final class HtmlScanner {
+    private static final Set<String> RAW_TEXT_TAGS = Set.of("script", "style", "noscript", "template",
+            "textarea", "svg", "iframe", "object");
+    private static final Set<String> BLOCK_TAGS = Set.of("address", "article", "aside", "blockquote", "br",
+            "dd", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form", "h1", "h2", "h3",
+            "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "p", "pre", "section", "table",
+            "tbody", "td", "tfoot", "th", "thead", "title", "tr", "ul", "option", "body", "head", "html");
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+    private static final int CHARSET_SNIFF_BYTES = 2048;
+
+    /**
+     * @param links абсолютные адреса из a[href] в порядке появления, без нормализации
+     */
+    public record Result(String title, String text, List<String> links) {
+    }
+
+    private HtmlScanner() {
+    }
+
+    /**
+     * Декодирует тело ответа: кодировка из заголовка Content-Type, иначе из meta charset в начале документа, иначе UTF-8.
+     */
+    public static String decode(byte[] body, String headerCharset) {
+        Charset charset = charsetOrNull(headerCharset);
+        if (charset == null) {
+            String head = new String(body, 0, Math.min(body.length, CHARSET_SNIFF_BYTES), StandardCharsets.ISO_8859_1);
+            Matcher matcher = META_CHARSET.matcher(head);
+            charset = matcher.find() ? charsetOrNull(matcher.group(1)) : null;
+        }
+        return new String(body, charset == null ? StandardCharsets.UTF_8 : charset);
+    }
+
+    public static Result scan(String html, String pageUrl) {
+        return new Scanner(html, pageUrl).scan();
+    }
+
+    private static Charset charsetOrNull(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        try {
+            return Charset.forName(name.trim());
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return null;
+        }
+    }
+
+    private static final class Scanner {
+        private final String html;
+        private final int length;
+        private final StringBuilder text = new StringBuilder();
+        private final List<String> links = new ArrayList<>();
+        private final List<String> hrefs = new ArrayList<>();
+        private String pageUrl;
+        private String title = "";
+        private boolean baseSeen;
+        private int pos;
+
+        Scanner(String html, String pageUrl) {
+            this.html = html;
+            this.length = html.length();
+            this.pageUrl = pageUrl;
+        }
+
+        Result scan() {
+            while (pos < length) {
+                int tagStart = html.indexOf('<', pos);
+                if (tagStart < 0) {
+                    appendText(pos, length);
+                    break;
+                }
+                appendText(pos, tagStart);
+                pos = tagStart;
+                readMarkup();
+            }
+            URI base = toUri(pageUrl);
+            for (String href : hrefs) {
+                String link = resolve(base, href);
+                if (link != null) {
+                    links.add(link);
+                }
+            }
+            int end = text.length();
+            if (end > 0 && text.charAt(end - 1) == ' ') {
+                text.setLength(end - 1);
+            }
+            return new Result(title, text.toString(), links);
+        }
+
+        private void readMarkup() {
+            if (html.startsWith("<!--", pos)) {
+                pos = skipPast("-->", pos + 4);
+            } else if (pos + 1 < length && (html.charAt(pos + 1) == '!' || html.charAt(pos + 1) == '?')) {
+                pos = skipPast(">", pos + 2);
+            } else if (pos + 1 < length && html.charAt(pos + 1) == '/') {
+                int nameEnd = nameEnd(pos + 2);
+                String name = html.substring(pos + 2, nameEnd).toLowerCase(Locale.ROOT);
+                pos = skipPast(">", nameEnd);
+                if (BLOCK_TAGS.contains(name)) {
+                    space();
+                }
+            } else if (pos + 1 < length && Character.isLetter(html.charAt(pos + 1))) {
+                readStartTag();
+            } else {
+                text(pos, pos + 1);
+                pos++;
+            }
+        }
+
+        private void readStartTag() {
+            int nameEnd = nameEnd(pos + 1);
+            String name = html.substring(pos + 1, nameEnd).toLowerCase(Locale.ROOT);
+            pos = nameEnd;
+            String href = readAttributes(name.equals("a") || name.equals("base") ? "href" : null);
+            if (BLOCK_TAGS.contains(name)) {
+                space();
+            }
+            switch (name) {
+                case "a" -> {
+                    if (href != null) {
+                        hrefs.add(href);
+                    }
+                }
+                case "base" -> {
+                    if (href != null && !baseSeen) {
+                        baseSeen = true;
+                        String resolved = resolve(toUri(pageUrl), href);
+                        if (resolved != null) {
+                            pageUrl = resolved;
+                        }
+                    }
+                }
+                case "title" -> {
+                    int end = closingTag(name);
+                    String titleText = collapse(unescape(html.substring(pos, end)));
+                    if (title.isEmpty()) {
+                        title = titleText;
+                    }
+                    text.append(titleText);
+                    space();
+                    pos = skipPast(">", end);
+                }
+                default -> {
+                    if (RAW_TEXT_TAGS.contains(name)) {
+                        pos = skipPast(">", closingTag(name));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Пропускает атрибуты до конца тега.
+         *
+         * @return значение атрибута wanted или null
+         */
+        private String readAttributes(String wanted) {
+            String value = null;
+            while (pos < length) {
+                char c = html.charAt(pos);
+                if (c == '>') {
+                    pos++;
+                    return value;
+                }
+                if (Character.isWhitespace(c) || c == '/') {
+                    pos++;
+                    continue;
+                }
+                int nameStart = pos;
+                while (pos < length && !Character.isWhitespace(html.charAt(pos))
+                        && "=>/".indexOf(html.charAt(pos)) < 0) {
+                    pos++;
+                }
+                String attribute = html.substring(nameStart, pos);
+                while (pos < length && Character.isWhitespace(html.charAt(pos))) {
+                    pos++;
+                }
+                if (pos >= length || html.charAt(pos) != '=') {
+                    continue;
+                }
+                pos++;
+                while (pos < length && Character.isWhitespace(html.charAt(pos))) {
+                    pos++;
+                }
+                int valueStart;
+                int valueEnd;
+                if (pos < length && (html.charAt(pos) == '"' || html.charAt(pos) == '\'')) {
+                    char quote = html.charAt(pos);
+                    valueStart = pos + 1;
+                    valueEnd = html.indexOf(quote, valueStart);
+                    valueEnd = valueEnd < 0 ? length : valueEnd;
+                    pos = Math.min(length, valueEnd + 1);
+                } else {
+                    valueStart = pos;
+                    while (pos < length && !Character.isWhitespace(html.charAt(pos)) && html.charAt(pos) != '>') {
+                        pos++;
+                    }
+                    valueEnd = pos;
+                }
+                if (value == null && wanted != null && attribute.equalsIgnoreCase(wanted)) {
+                    value = unescape(html.substring(valueStart, valueEnd)).trim();
+                }
+            }
+            return value;
+        }
+
+        private int nameEnd(int from) {
+            int end = from;
+            while (end < length) {
+                char c = html.charAt(end);
+                if (Character.isWhitespace(c) || c == '>' || c == '/') {
+                    break;
+                }
+                end++;
+            }
+            return end;
+        }
+
+        /**
+         * Позиция закрывающего тега name (без учёта регистра) или конец документа.
+         */
+        private int closingTag(String name) {
+            int from = pos;
+            while (true) {
+                int candidate = html.indexOf("</", from);
+                if (candidate < 0) {
+                    return length;
+                }
+                if (html.regionMatches(true, candidate + 2, name, 0, name.length())) {
+                    return candidate;
+                }
+                from = candidate + 2;
+            }
+        }
+
+        private int skipPast(String marker, int from) {
+            int found = html.indexOf(marker, from);
+            return found < 0 ? length : found + marker.length();
+        }
+
+        private void appendText(int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (html.charAt(i) == '&') {
+                    String decoded = unescape(html.substring(i, to));
+                    for (int j = 0; j < decoded.length(); j++) {
+                        append(decoded.charAt(j));
+                    }
+                    return;
+                }
+                append(html.charAt(i));
+            }
+        }
+
+        private void text(int from, int to) {
+            for (int i = from; i < to; i++) {
+                append(html.charAt(i));
+            }
+        }
+
+        private void append(char c) {
+            if (Character.isWhitespace(c) || c == '\u00a0') {
+                space();
+            } else {
+                text.append(c);
+            }
+        }
+
+        private void space() {
+            int end = text.length();
+            if (end > 0 && text.charAt(end - 1) != ' ') {
+                text.append(' ');
+            }
+        }
+
+        private static String unescape(String value) {
+            return value.indexOf('&') < 0 ? value : Parser.unescapeEntities(value, false);
+        }
+
+        private static String collapse(String value) {
+            return value.replaceAll("[\\s\\u00a0]+", " ").trim();
+        }
+
+        private static URI toUri(String url) {
+            try {
+                return new URI(url);
+            } catch (URISyntaxException e) {
+                return null;
+            }
+        }
+
+        private static String resolve(URI base, String href) {
+            String trimmed = href.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                return null;
+            }
+            try {
+                URI uri = new URI(trimmed);
+                return base == null ? uri.toString() : base.resolve(uri).toString();
+            } catch (URISyntaxException e) {
+                return null;
+            }
+        }
+    }
+}
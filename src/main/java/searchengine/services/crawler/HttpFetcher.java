@@ -0,0 +1,267 @@
+package searchengine.services.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Загрузка страниц через один общий {@link HttpClient}: HTTP/2 там, где сервер его поддерживает,
+ * и переиспользуемые keep-alive соединения для HTTP/1.1.
+ * Тип содержимого проверяется по заголовкам до чтения тела: не-HTML ответы и тела больше maxBodyBytes
+ * обрываются, не загружаясь целиком. Сжатие gzip и deflate снимается с тем же ограничением размера.
+ */
+public class HttpFetcher {
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) " +
+            "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/67.0.3396.99 Safari/537.36";
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final HttpClient client;
+    private final Duration timeout;
+    private final long maxBodyBytes;
+    private final Set<String> htmlContentTypes;
+
+    public HttpFetcher(int timeoutMs, long maxBodyBytes, Set<String> htmlContentTypes) {
+        this.timeout = Duration.ofMillis(Math.max(1, timeoutMs));
+        this.maxBodyBytes = maxBodyBytes;
+        this.htmlContentTypes = htmlContentTypes;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * @param body    тело без сжатия или null, если тип содержимого не HTML, тело слишком большое или его нет (304)
+     * @param charset кодировка из Content-Type или null
+     */
+    public record Response(URI uri, int statusCode, HttpHeaders headers, byte[] body, String charset) {
+        public String url() {
+            return uri.toString();
+        }
+
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+    }
+
+    /**
+     * Загружает HTML-страницу. Перенаправления выполняются, итоговый адрес - {@link Response#uri()}.
+     */
+    public Response fetch(String url, Map<String, String> extraHeaders) throws IOException, InterruptedException {
+        HttpRequest.Builder request = newRequest(url)
+                .header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.1");
+        extraHeaders.forEach(request::header);
+        HttpResponse<byte[]> response = client.send(request.build(), info -> new LimitedBody(
+                isAccepted(info.headers()) ? maxBodyBytes : -1));
+        HttpHeaders headers = response.headers();
+        byte[] body = response.body() == null ? null
+                : decode(response.body(), headers.firstValue("Content-Encoding").orElse(null));
+        return new Response(response.uri(), response.statusCode(), headers, body, charsetOf(headers));
+    }
+
+    /**
+     * Поток тела ответа (sitemap, robots.txt) или null, если ответ не 200. Сжатие снимается по Content-Encoding,
+     * а затем ещё раз, если тело начинается с сигнатуры gzip (файл .gz, отданный как есть).
+     * Чтение распакованного тела дальше maxBytes завершается IOException.
+     */
+    public InputStream openStream(String url, long maxBytes) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(newRequest(url).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            return null;
+        }
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("identity");
+        InputStream body = switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(response.body());
+            case "deflate" -> new InflaterInputStream(response.body());
+            default -> response.body();
+        };
+        return new LimitedInputStream(gunzipIfCompressed(body), maxBytes);
+    }
+
+    static InputStream gunzipIfCompressed(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        boolean gzip = first == (GZIPInputStream.GZIP_MAGIC & 0xFF) && second == (GZIPInputStream.GZIP_MAGIC >>> 8);
+        return gzip ? new GZIPInputStream(buffered) : buffered;
+    }
+
+    private HttpRequest.Builder newRequest(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("User-Agent", USER_AGENT)
+                .header("Referer", "https://www.google.com")
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET();
+    }
+
+    /**
+     * Ответ без Content-Type считается HTML.
+     */
+    private boolean isAccepted(HttpHeaders headers) {
+        long length = headers.firstValueAsLong("Content-Length").orElse(-1);
+        if (length > maxBodyBytes) {
+            return false;
+        }
+        String contentType = headers.firstValue("Content-Type").orElse(null);
+        if (contentType == null) {
+            return true;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mediaType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon))
+                .trim().toLowerCase(Locale.ROOT);
+        return htmlContentTypes.contains(mediaType);
+    }
+
+    /**
+     * Снимает сжатие, не давая распакованному телу превысить maxBodyBytes.
+     */
+    private byte[] decode(byte[] body, String encoding) throws IOException {
+        InputStream in;
+        switch (encoding == null ? "identity" : encoding.trim().toLowerCase(Locale.ROOT)) {
+            case "identity" -> {
+                return body;
+            }
+            case "gzip", "x-gzip" -> in = new GZIPInputStream(new ByteArrayInputStream(body));
+            case "deflate" -> in = new InflaterInputStream(new ByteArrayInputStream(body));
+            default -> {
+                return null;
+            }
+        }
+        try (in) {
+            byte[] decoded = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxBodyBytes + 1));
+            return decoded.length > maxBodyBytes ? null : decoded;
+        }
+    }
+
+    private static String charsetOf(HttpHeaders headers) {
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        for (String parameter : contentType.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                return pair[1].trim().replace("\"", "");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Поток, обрывающий чтение с IOException после maxBytes байт.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long read;
+
+        LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, (int) Math.min(length, maxBytes - read + 1));
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            read += n;
+            if (read > maxBytes) {
+                throw new IOException("Тело ответа больше " + maxBytes + " байт");
+            }
+        }
+    }
+
+    /**
+     * Собирает тело, пока оно не превысит maxBytes; после этого отменяет загрузку и отдаёт null.
+     * При maxBytes < 0 загрузка отменяется сразу.
+     */
+    private static final class LimitedBody implements HttpResponse.BodySubscriber<byte[]> {
+        private final long maxBytes;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private Flow.Subscription subscription;
+
+        LimitedBody(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (maxBytes < 0) {
+                subscription.cancel();
+                result.complete(null);
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (result.isDone()) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                if (out.size() + (long) buffer.remaining() > maxBytes) {
+                    subscription.cancel();
+                    result.complete(null);
+                    return;
+                }
+                byte[] chunk = new byte[buffer.remaining()];
+                buffer.get(chunk);
+                out.write(chunk, 0, chunk.length);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(out.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package searchengine.services.crawler;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запущенная в фоне индексация. Пулы загрузки регистрируются в задании, и {@link #cancel()}
+ * прерывает их потоки сразу, а не после очередной проверки флага в цикле.
+ * Пул, зарегистрированный после отмены, останавливается тут же.
+ */
+public class IndexingJob {
+    public enum State {
+        RUNNING,
+        CANCELLING,
+        FINISHED,
+        CANCELLED,
+        FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final LocalDateTime startTime = LocalDateTime.now();
+    private final Set<ExecutorService> executors = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile State state = State.RUNNING;
+    private volatile LocalDateTime endTime;
+    private volatile String error;
+
+    public String getId() {
+        return id;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isCancelled() {
+        return state == State.CANCELLING || state == State.CANCELLED;
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    public void register(ExecutorService executor) {
+        executors.add(executor);
+        if (isCancelled()) {
+            executor.shutdownNow();
+        }
+    }
+
+    public void unregister(ExecutorService executor) {
+        executors.remove(executor);
+    }
+
+    public synchronized void cancel() {
+        if (state == State.RUNNING) {
+            state = State.CANCELLING;
+        }
+        executors.forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * @param failure null при успешном или отменённом завершении
+     */
+    public synchronized void finish(Throwable failure) {
+        if (failure != null) {
+            state = State.FAILED;
+            error = failure.getMessage();
+        } else {
+            state = isCancelled() ? State.CANCELLED : State.FINISHED;
+        }
+        endTime = LocalDateTime.now();
+        done.countDown();
+    }
+
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+}
@@ -0,0 +1,94 @@
+package searchengine.services.crawler;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Множество long с открытой адресацией без упаковки в Long: 8 байт на ячейку
+ * при заполнении не больше половины. Ноль хранится отдельным флагом. Не потокобезопасно.
+ */
+public class LongHashSet {
+    private long[] slots;
+    private boolean hasZero;
+    private int size;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        slots = new long[capacity];
+    }
+
+    /**
+     * @return true, если значения ещё не было
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int slot = (int) (value ^ (value >>> 32)) & mask;
+        while (slots[slot] != 0) {
+            if (slots[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+        if (++size * 2 > slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) {
+            return hasZero;
+        }
+        int mask = slots.length - 1;
+        int slot = (int) (value ^ (value >>> 32)) & mask;
+        while (slots[slot] != 0) {
+            if (slots[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (hasZero) {
+            action.accept(0);
+        }
+        for (long value : slots) {
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        int mask = slots.length - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int slot = (int) (value ^ (value >>> 32)) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = value;
+            }
+        }
+    }
+}
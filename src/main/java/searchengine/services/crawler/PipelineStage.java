@@ -0,0 +1,122 @@
+package searchengine.services.crawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Стадия конвейера: ограниченная входная очередь и собственный пул потоков.
+ * Если очередь заполнена, {@link #put(Object)} блокирует предыдущую стадию.
+ * Потоки стадии забирают элементы пачками по batchSize и передают их обработчику.
+ * Стадию можно закрыть с обработкой всего поставленного ({@link #closeAndAwait()})
+ * или отменить, отбросив очередь ({@link #cancelAndAwait(long)}).
+ */
+public class PipelineStage<T> {
+    private static final Logger logger = Logger.getLogger(PipelineStage.class.getName());
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int batchSize;
+    private final Consumer<List<T>> handler;
+    private final ExecutorService executor;
+    private volatile boolean closed;
+    private volatile boolean cancelled;
+
+    private PipelineStage(String name, int capacity, int threads, int batchSize, Consumer<List<T>> handler) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.handler = handler;
+        int threadCount = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(this::work);
+        }
+    }
+
+    public static <T> PipelineStage<T> of(String name, int capacity, int threads, Consumer<T> handler) {
+        return new PipelineStage<>(name, capacity, threads, 1, items -> items.forEach(handler));
+    }
+
+    public static <T> PipelineStage<T> batched(String name, int capacity, int threads, int batchSize,
+                                               Consumer<List<T>> handler) {
+        return new PipelineStage<>(name, capacity, threads, batchSize, handler);
+    }
+
+    /**
+     * Блокирует, пока в очереди нет места; после отмены стадии элемент отбрасывается.
+     */
+    public void put(T item) throws InterruptedException {
+        while (!cancelled && !queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+            // ждём места в очереди или отмены
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Запрещает новые элементы, дожидается обработки уже поставленных
+     * (включая неполную последнюю пачку) и останавливает потоки стадии.
+     */
+    public void closeAndAwait() throws InterruptedException {
+        closed = true;
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            logger.log(Level.FINE, "Стадия " + name + " ещё работает, в очереди " + queue.size());
+        }
+    }
+
+    /**
+     * Отбрасывает необработанные элементы, прерывает потоки стадии и ждёт их не дольше timeoutMs.
+     *
+     * @return false, если потоки не завершились за отведённое время
+     */
+    public boolean cancelAndAwait(long timeoutMs) throws InterruptedException {
+        cancelled = true;
+        closed = true;
+        queue.clear();
+        executor.shutdownNow();
+        return executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void work() {
+        List<T> batch = new ArrayList<>(batchSize);
+        try {
+            while (!cancelled && (!closed || !queue.isEmpty())) {
+                T item = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    continue;
+                }
+                batch.add(item);
+                queue.drainTo(batch, batchSize - batch.size());
+                if (batch.size() >= batchSize) {
+                    handle(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!batch.isEmpty() && !cancelled) {
+            handle(batch);
+        }
+    }
+
+    private void handle(List<T> batch) {
+        try {
+            handler.accept(batch);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Ошибка на стадии " + name, e);
+        } finally {
+            batch.clear();
+        }
+    }
+}
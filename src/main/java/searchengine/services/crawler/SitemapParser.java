@@ -0,0 +1,156 @@
+package searchengine.services.crawler;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый разбор robots.txt и sitemap.xml. Sitemap читается через StAX по одному элементу,
+ * поэтому в памяти не держится ни документ, ни список его ссылок: каждая запись сразу
+ * передаётся обработчику. Обычный sitemap (urlset) и индекс (sitemapindex) разбираются одним методом.
+ */
+public final class SitemapParser {
+    /**
+     * Приоритет страницы по умолчанию из протокола sitemaps.org.
+     */
+    public static final double DEFAULT_PRIORITY = 0.5;
+    private static final String SITEMAP_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+    private static final XMLInputFactory XML_INPUT_FACTORY = newInputFactory();
+
+    /**
+     * @param lastModified null, если lastmod не указан или не разобран
+     */
+    public record Entry(String loc, Instant lastModified, double priority) {
+    }
+
+    private SitemapParser() {
+    }
+
+    /**
+     * Ссылки на sitemap из директив Sitemap в robots.txt.
+     */
+    public static List<String> sitemapsFromRobots(Reader robots) throws IOException {
+        List<String> sitemaps = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(robots);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("sitemap")) {
+                String url = line.substring(colon + 1).trim();
+                if (!url.isEmpty()) {
+                    sitemaps.add(url);
+                }
+            }
+        }
+        return sitemaps;
+    }
+
+    /**
+     * Разбирает sitemap: записи url передаются в pages, ссылки на вложенные sitemap из индекса - в sitemaps.
+     * Поля записи берутся только из прямых потомков url и sitemap в пространстве имён sitemaps.org
+     * (или без него), поэтому расширения вроде image:loc и video:loc адрес страницы не подменяют.
+     */
+    public static void parse(InputStream in, Consumer<Entry> pages, Consumer<String> sitemaps) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            String loc = null;
+            String lastmod = null;
+            String priority = null;
+            int depth = 0;
+            int entryDepth = -1;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (!isSitemapElement(reader)) {
+                        continue;
+                    }
+                    String name = reader.getLocalName();
+                    if (name.equals("url") || name.equals("sitemap")) {
+                        loc = null;
+                        lastmod = null;
+                        priority = null;
+                        entryDepth = depth;
+                    } else if (depth == entryDepth + 1) {
+                        switch (name) {
+                            case "loc" -> loc = reader.getElementText().trim();
+                            case "lastmod" -> lastmod = reader.getElementText().trim();
+                            case "priority" -> priority = reader.getElementText().trim();
+                            default -> {
+                            }
+                        }
+                        if (reader.getEventType() == XMLStreamConstants.END_ELEMENT) {
+                            depth--;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (loc == null || loc.isEmpty() || !isSitemapElement(reader)) {
+                        continue;
+                    }
+                    if (reader.getLocalName().equals("url")) {
+                        pages.accept(new Entry(loc, parseLastModified(lastmod), parsePriority(priority)));
+                    } else if (reader.getLocalName().equals("sitemap")) {
+                        sitemaps.accept(loc);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean isSitemapElement(XMLStreamReader reader) {
+        String namespace = reader.getNamespaceURI();
+        return namespace == null || namespace.isEmpty() || namespace.equals(SITEMAP_NAMESPACE);
+    }
+
+    /**
+     * Дата в формате W3C Datetime: от "2024-05-01" до "2024-05-01T10:15:30+03:00".
+     */
+    static Instant parseLastModified(String lastmod) {
+        if (lastmod == null || lastmod.isEmpty()) {
+            return null;
+        }
+        try {
+            if (lastmod.length() == 10) {
+                return LocalDate.parse(lastmod).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(lastmod).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static double parsePriority(String priority) {
+        if (priority == null || priority.isEmpty()) {
+            return DEFAULT_PRIORITY;
+        }
+        try {
+            double value = Double.parseDouble(priority);
+            return value >= 0 && value <= 1 ? value : DEFAULT_PRIORITY;
+        } catch (NumberFormatException e) {
+            return DEFAULT_PRIORITY;
+        }
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -0,0 +1,28 @@
+package searchengine.services.crawler;
+
+/**
+ * 64-битный хэш строки (ссылки, пути, текста страницы): FNV-1a по символам
+ * с финальным перемешиванием из MurmurHash3.
+ * При миллионе ссылок на сайт вероятность совпадения двух хэшей порядка 10^-8.
+ */
+public final class UrlHash {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private UrlHash() {
+    }
+
+    public static long hash64(CharSequence value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,110 @@
+package searchengine.services.crawler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Приводит ссылку к единому виду до постановки в очередь, чтобы одна страница
+ * не загружалась и не сохранялась дважды: схема и хост в нижнем регистре,
+ * без порта по умолчанию, фрагмента, точечных сегментов, повторных и завершающих "/",
+ * параметры запроса отсортированы.
+ */
+public final class UrlNormalizer {
+
+    private UrlNormalizer() {
+    }
+
+    /**
+     * @return нормализованная ссылка или null, если это не http(s)-ссылка
+     */
+    public static String normalize(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        String trimmed = url.trim();
+        int fragment = trimmed.indexOf('#');
+        if (fragment >= 0) {
+            trimmed = trimmed.substring(0, fragment);
+        }
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!"http".equals(scheme) && !"https".equals(scheme) || uri.getRawAuthority() == null || uri.getHost() == null) {
+            return null;
+        }
+        StringBuilder normalized = new StringBuilder(trimmed.length());
+        normalized.append(scheme).append("://").append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            normalized.append(':').append(port);
+        }
+        normalized.append(normalizePath(uri.getRawPath()));
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            String sorted = Arrays.stream(query.split("&"))
+                    .filter(parameter -> !parameter.isEmpty())
+                    .sorted()
+                    .collect(Collectors.joining("&"));
+            if (!sorted.isEmpty()) {
+                normalized.append('?').append(sorted);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Путь страницы относительно сайта вместе с запросом: то, что хранится в page.path.
+     */
+    public static String pathOf(String normalizedUrl) {
+        int hostStart = normalizedUrl.indexOf("://") + 3;
+        int pathStart = normalizedUrl.indexOf('/', hostStart);
+        if (pathStart < 0) {
+            int query = normalizedUrl.indexOf('?', hostStart);
+            return query < 0 ? "/" : "/" + normalizedUrl.substring(query);
+        }
+        return normalizedUrl.substring(pathStart);
+    }
+
+    public static String hostOf(String normalizedUrl) {
+        int hostStart = normalizedUrl.indexOf("://") + 3;
+        int hostEnd = hostStart;
+        while (hostEnd < normalizedUrl.length() && "/?:".indexOf(normalizedUrl.charAt(hostEnd)) < 0) {
+            hostEnd++;
+        }
+        return normalizedUrl.substring(hostStart, hostEnd);
+    }
+
+    private static String normalizePath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        String[] segments = rawPath.split("/");
+        String[] stack = new String[segments.length];
+        int depth = 0;
+        for (String segment : segments) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                depth = Math.max(0, depth - 1);
+            } else {
+                stack[depth++] = segment;
+            }
+        }
+        if (depth == 0) {
+            return "/";
+        }
+        StringBuilder path = new StringBuilder(rawPath.length());
+        for (int i = 0; i < depth; i++) {
+            path.append('/').append(stack[i]);
+        }
+        return path.toString();
+    }
+}
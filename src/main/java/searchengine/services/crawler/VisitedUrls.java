@@ -0,0 +1,54 @@
+package searchengine.services.crawler;
+
+/**
+ * Потокобезопасное множество посещённых ссылок сайта по их 64-битным хэшам.
+ * Пока ссылок меньше порога, хранится точное множество; на очень больших сайтах
+ * хэши переносятся в фильтр Блума, и памяти нужно в разы меньше ценой
+ * небольшой доли ошибочно пропущенных страниц.
+ */
+public class VisitedUrls {
+    private final long bloomThreshold;
+    private final long bloomCapacity;
+    private final double bloomFalsePositiveRate;
+    private LongHashSet exact = new LongHashSet();
+    private BloomFilter bloom;
+    private long size;
+
+    /**
+     * @param bloomThreshold с какого числа ссылок переходить на фильтр Блума; 0 - никогда
+     */
+    public VisitedUrls(long bloomThreshold, long bloomCapacity, double bloomFalsePositiveRate) {
+        this.bloomThreshold = bloomThreshold;
+        this.bloomCapacity = bloomCapacity;
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+    }
+
+    public VisitedUrls() {
+        this(0, 0, 0);
+    }
+
+    /**
+     * @return true, если ссылка встретилась впервые
+     */
+    public synchronized boolean add(CharSequence url) {
+        long hash = UrlHash.hash64(url);
+        boolean added = bloom != null ? bloom.add(hash) : exact.add(hash);
+        if (added) {
+            size++;
+            if (bloom == null && bloomThreshold > 0 && size >= bloomThreshold) {
+                switchToBloom();
+            }
+        }
+        return added;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    private void switchToBloom() {
+        bloom = new BloomFilter(Math.max(bloomCapacity, size * 2), bloomFalsePositiveRate);
+        exact.forEach(bloom::add);
+        exact = null;
+    }
+}
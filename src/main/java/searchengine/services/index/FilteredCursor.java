@@ -0,0 +1,45 @@
+package searchengine.services.index;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Курсор, пропускающий страницы, для которых excluded возвращает true.
+ */
+public class FilteredCursor implements PostingCursor {
+    private final PostingCursor source;
+    private final IntPredicate excluded;
+
+    public FilteredCursor(PostingCursor source, IntPredicate excluded) {
+        this.source = source;
+        this.excluded = excluded;
+    }
+
+    @Override
+    public int doc() {
+        return source.doc();
+    }
+
+    @Override
+    public float rank() {
+        return source.rank();
+    }
+
+    @Override
+    public boolean next() {
+        return source.next() && skipExcluded();
+    }
+
+    @Override
+    public boolean advance(int target) {
+        return source.advance(target) && skipExcluded();
+    }
+
+    private boolean skipExcluded() {
+        while (excluded.test(source.doc())) {
+            if (!source.next()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,4 @@
+package searchengine.services.index;
+
+public record IndexEntry(int lemmaId, int pageId, float rank) {
+}
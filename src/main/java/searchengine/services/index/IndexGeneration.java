@@ -0,0 +1,23 @@
+package searchengine.services.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Поколение индекса: растёт, когда меняется то, что видит поиск, - индекс очищен перед полным обходом,
+ * закончен обход сайта или переиндексирована страница. Кэши результатов поиска запоминают поколение,
+ * для которого посчитаны, и после его смены не используются.
+ */
+@Component
+public class IndexGeneration {
+    private final AtomicLong generation = new AtomicLong();
+
+    public long current() {
+        return generation.get();
+    }
+
+    public long next() {
+        return generation.incrementAndGet();
+    }
+}
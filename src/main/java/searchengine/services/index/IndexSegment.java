@@ -0,0 +1,360 @@
+package searchengine.services.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Неизменяемый сегмент обратного индекса на диске, читаемый через {@link FileChannel#map}.
+ * Все числа big-endian, varint - 7 бит на байт, старший бит означает продолжение.
+ * <pre>
+ * Заголовок, 32 байта:
+ *   int   magic = 0x53454731 ("SEG1")
+ *   int   version = 1
+ *   int   lemmaCount
+ *   int   pageCount
+ *   long  postingsOffset
+ *   long  normsOffset
+ * Словарь, lemmaCount записей по 24 байта, по возрастанию lemmaId
+ * (до postingsOffset может остаться неиспользуемый нулевой хвост):
+ *   int   lemmaId
+ *   int   docCount
+ *   long  offset     - начало списка леммы в файле
+ *   int   length     - длина списка в байтах
+ *   float maxRank
+ * Список страниц леммы:
+ *   skipCount = ceil(docCount / 128) записей (int pageId, int смещение в docBytes) -
+ *               каждая 128-я запись, начиная с нулевой
+ *   int   docBytesLength
+ *   docBytes        - разности id страниц в varint, первая - от нуля
+ *   float[docCount] - ранги в том же порядке
+ * Нормы страниц, pageCount записей по 12 байт, по возрастанию pageId:
+ *   int   pageId
+ *   int   lemmaCount - число разных лемм страницы
+ *   float rankSum    - сумма рангов лемм страницы
+ * </pre>
+ * Файл отображается в память целиком, поэтому его размер ограничен 2 ГБ.
+ */
+public class IndexSegment {
+    static final int MAGIC = 0x53454731;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int DICTIONARY_ENTRY_BYTES = 24;
+    static final int NORM_ENTRY_BYTES = 12;
+    static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private final Path path;
+    private final long generation;
+    private final MappedByteBuffer buffer;
+    private final int lemmaCount;
+    private final int pageCount;
+    private final long normsOffset;
+
+    private IndexSegment(Path path, long generation, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.generation = generation;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Неизвестный формат сегмента " + path);
+        }
+        this.lemmaCount = buffer.getInt(8);
+        this.pageCount = buffer.getInt(12);
+        this.normsOffset = buffer.getLong(24);
+    }
+
+    /**
+     * @param generation порядковый номер сегмента: удаление страницы скрывает её только в сегментах
+     *                   с номером не больше записанного при удалении
+     */
+    public static IndexSegment open(Path path, long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_SEGMENT_BYTES) {
+                throw new IOException("Сегмент больше 2 ГБ: " + path);
+            }
+            return new IndexSegment(path, generation, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    public int[] lemmaIds() {
+        int[] ids = new int[lemmaCount];
+        for (int i = 0; i < lemmaCount; i++) {
+            ids[i] = buffer.getInt(dictionaryEntry(i));
+        }
+        return ids;
+    }
+
+    public int[] pageIds() {
+        int[] ids = new int[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            ids[i] = buffer.getInt((int) normsOffset + i * NORM_ENTRY_BYTES);
+        }
+        return ids;
+    }
+
+    public int docCount(int lemmaId) {
+        int entry = findLemma(lemmaId);
+        return entry < 0 ? 0 : buffer.getInt(entry + 4);
+    }
+
+    public float maxRank(int lemmaId) {
+        int entry = findLemma(lemmaId);
+        return entry < 0 ? 0 : buffer.getFloat(entry + 20);
+    }
+
+    /**
+     * Курсор по списку леммы или null, если леммы в сегменте нет.
+     */
+    public PostingCursor cursor(int lemmaId) {
+        int entry = findLemma(lemmaId);
+        if (entry < 0) {
+            return null;
+        }
+        return new SegmentCursor(buffer, buffer.getInt(entry + 4), (int) buffer.getLong(entry + 8));
+    }
+
+    private int findLemma(int lemmaId) {
+        int low = 0;
+        int high = lemmaCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = dictionaryEntry(mid);
+            int midLemma = buffer.getInt(entry);
+            if (midLemma == lemmaId) {
+                return entry;
+            } else if (midLemma < lemmaId) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int dictionaryEntry(int index) {
+        return HEADER_BYTES + index * DICTIONARY_ENTRY_BYTES;
+    }
+
+    /**
+     * Пишет сегмент во временный файл и атомарно переименовывает его в target.
+     *
+     * @param lemmaIds  id лемм по возрастанию
+     * @param cursorFor курсор по списку леммы; пустые списки в сегмент не попадают,
+     *                  а lemmaCount в заголовке учитывает только записанные леммы
+     */
+    public static void write(Path target, int[] lemmaIds, IntFunction<PostingCursor> cursorFor) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        ByteBuffer dictionary = ByteBuffer.allocate(lemmaIds.length * DICTIONARY_ENTRY_BYTES);
+        Map<Integer, float[]> norms = new TreeMap<>();
+        int writtenLemmas = 0;
+        long postingsOffset = HEADER_BYTES + (long) lemmaIds.length * DICTIONARY_ENTRY_BYTES;
+        long position = postingsOffset;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(postingsOffset);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            EncodedPostings encoded = new EncodedPostings();
+            for (int lemmaId : lemmaIds) {
+                encoded.reset();
+                PostingCursor cursor = cursorFor.apply(lemmaId);
+                while (cursor != null && cursor.next()) {
+                    encoded.add(cursor.doc(), cursor.rank());
+                    float[] norm = norms.computeIfAbsent(cursor.doc(), page -> new float[2]);
+                    norm[0]++;
+                    norm[1] += cursor.rank();
+                }
+                if (encoded.size == 0) {
+                    continue;
+                }
+                int length = encoded.writeTo(out);
+                dictionary.putInt(lemmaId).putInt(encoded.size).putLong(position).putInt(length).putFloat(encoded.maxRank);
+                position += length;
+                writtenLemmas++;
+                if (position > MAX_SEGMENT_BYTES) {
+                    throw new IOException("Сегмент больше 2 ГБ: " + target);
+                }
+            }
+            long normsOffset = position;
+            for (Map.Entry<Integer, float[]> norm : norms.entrySet()) {
+                out.writeInt(norm.getKey());
+                out.writeInt((int) norm.getValue()[0]);
+                out.writeFloat(norm.getValue()[1]);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(writtenLemmas).putInt(norms.size())
+                    .putLong(postingsOffset).putLong(normsOffset);
+            header.flip();
+            channel.write(header, 0);
+            dictionary.flip();
+            channel.write(dictionary, HEADER_BYTES);
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static final class EncodedPostings {
+        private int[] docs = new int[256];
+        private float[] ranks = new float[256];
+        private int size;
+        private float maxRank;
+
+        void reset() {
+            size = 0;
+            maxRank = 0;
+        }
+
+        void add(int doc, float rank) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            docs[size] = doc;
+            ranks[size] = rank;
+            maxRank = Math.max(maxRank, rank);
+            size++;
+        }
+
+        int writeTo(DataOutputStream out) throws IOException {
+            int skipCount = (size + PostingList.SKIP_INTERVAL - 1) / PostingList.SKIP_INTERVAL;
+            byte[] docBytes = new byte[size * 5];
+            int[] skipOffsets = new int[skipCount];
+            int length = 0;
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                if (i % PostingList.SKIP_INTERVAL == 0) {
+                    skipOffsets[i / PostingList.SKIP_INTERVAL] = length;
+                }
+                int value = docs[i] - previous;
+                while ((value & ~0x7F) != 0) {
+                    docBytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                docBytes[length++] = (byte) value;
+                previous = docs[i];
+            }
+            for (int i = 0; i < skipCount; i++) {
+                out.writeInt(docs[i * PostingList.SKIP_INTERVAL]);
+                out.writeInt(skipOffsets[i]);
+            }
+            out.writeInt(length);
+            out.write(docBytes, 0, length);
+            for (int i = 0; i < size; i++) {
+                out.writeFloat(ranks[i]);
+            }
+            return skipCount * 8 + 4 + length + size * 4;
+        }
+    }
+
+    private static final class SegmentCursor implements PostingCursor {
+        private final ByteBuffer buffer;
+        private final int docCount;
+        private final int skipStart;
+        private final int skipCount;
+        private final int docStart;
+        private final int rankStart;
+        private int index = -1;
+        private int offset;
+        private int doc;
+
+        SegmentCursor(ByteBuffer buffer, int docCount, int start) {
+            this.buffer = buffer;
+            this.docCount = docCount;
+            this.skipStart = start;
+            this.skipCount = (docCount + PostingList.SKIP_INTERVAL - 1) / PostingList.SKIP_INTERVAL;
+            int docBytesLength = buffer.getInt(start + skipCount * 8);
+            this.docStart = start + skipCount * 8 + 4;
+            this.rankStart = docStart + docBytesLength;
+            this.offset = docStart;
+        }
+
+        @Override
+        public int doc() {
+            return index < 0 ? -1 : doc;
+        }
+
+        @Override
+        public float rank() {
+            return buffer.getFloat(rankStart + index * 4);
+        }
+
+        @Override
+        public boolean next() {
+            if (index + 1 >= docCount) {
+                index = docCount;
+                doc = NO_MORE_DOCS;
+                return false;
+            }
+            index++;
+            doc += readVarint();
+            return true;
+        }
+
+        @Override
+        public boolean advance(int target) {
+            if (index >= 0 && doc >= target) {
+                return doc != NO_MORE_DOCS;
+            }
+            int low = 0;
+            int high = skipCount - 1;
+            int skip = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (buffer.getInt(skipStart + mid * 8) <= target) {
+                    skip = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (skip >= 0 && skip * PostingList.SKIP_INTERVAL > index) {
+                index = skip * PostingList.SKIP_INTERVAL;
+                offset = docStart + buffer.getInt(skipStart + skip * 8 + 4);
+                readVarint();
+                doc = buffer.getInt(skipStart + skip * 8);
+            }
+            while (index < 0 || doc < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = buffer.get(offset++);
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package searchengine.services.index;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PageEntityRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Обратный индекс: id леммы -> список страниц с рангами.
+ * Свежие записи копятся в памяти ({@code active}); по окончании обхода сайта
+ * они сбрасываются в неизменяемый сегмент на диске ({@link SegmentStore}),
+ * а на время записи остаются доступны поиску как {@code flushing}.
+ * При старте загружаются сегменты, а из БД дочитываются только страницы, которых в них нет;
+ * если сегменты выключены, индекс целиком строится из таблицы indexPage.
+ * Пока индекс не готов, поиск идёт через БД.
+ */
+@Slf4j
+@Component
+public class InvertedIndex {
+    private static final int LOAD_PAGE_SIZE = 50_000;
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    private final IndexRepository indexRepository;
+    private final PageEntityRepository pageEntityRepository;
+    private final SegmentStore segmentStore;
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Object flushLock = new Object();
+    private volatile Map<Integer, PostingList> active = new ConcurrentHashMap<>();
+    private volatile Map<Integer, PostingList> flushing = Map.of();
+    private volatile boolean ready;
+
+    public InvertedIndex(IndexRepository indexRepository, PageEntityRepository pageEntityRepository,
+                         SegmentStore segmentStore) {
+        this.indexRepository = indexRepository;
+        this.pageEntityRepository = pageEntityRepository;
+        this.segmentStore = segmentStore;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread.ofPlatform().name("inverted-index-build").daemon().start(this::build);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Курсор по всем источникам леммы: память и сегменты от новых к старым, без удалённых страниц.
+     */
+    public PostingCursor cursor(int lemmaId) {
+        List<PostingCursor> sources = new ArrayList<>();
+        addMemoryCursor(active, lemmaId, sources);
+        addMemoryCursor(flushing, lemmaId, sources);
+        List<IndexSegment> segments = segmentStore.getSegments();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            PostingCursor cursor = segmentStore.cursor(segments.get(i), lemmaId);
+            if (cursor != null) {
+                sources.add(cursor);
+            }
+        }
+        if (sources.isEmpty()) {
+            return PostingList.Snapshot.EMPTY.cursor();
+        }
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        return new UnionCursor(sources);
+    }
+
+    /**
+     * Длина списка леммы без учёта удалений - для выбора порядка пересечения.
+     */
+    public int docCount(int lemmaId) {
+        int count = memorySize(active, lemmaId) + memorySize(flushing, lemmaId);
+        for (IndexSegment segment : segmentStore.getSegments()) {
+            count += segment.docCount(lemmaId);
+        }
+        return count;
+    }
+
+    /**
+     * Наибольший ранг в списке леммы по всем источникам - верхняя оценка её вклада в релевантность страницы.
+     */
+    public float maxRank(int lemmaId) {
+        float max = Math.max(memoryMaxRank(active, lemmaId), memoryMaxRank(flushing, lemmaId));
+        for (IndexSegment segment : segmentStore.getSegments()) {
+            max = Math.max(max, segment.maxRank(lemmaId));
+        }
+        return max;
+    }
+
+    public void add(Collection<IndexEntry> entries) {
+        Map<Integer, List<IndexEntry>> byLemma = entries.stream()
+                .collect(Collectors.groupingBy(IndexEntry::lemmaId));
+        swapLock.readLock().lock();
+        try {
+            byLemma.forEach((lemmaId, lemmaEntries) -> {
+                lemmaEntries.sort(Comparator.comparingInt(IndexEntry::pageId));
+                int[] pageIds = new int[lemmaEntries.size()];
+                float[] ranks = new float[lemmaEntries.size()];
+                for (int i = 0; i < pageIds.length; i++) {
+                    pageIds[i] = lemmaEntries.get(i).pageId();
+                    ranks[i] = lemmaEntries.get(i).rank();
+                }
+                addToActive(lemmaId, pageIds, ranks, pageIds.length);
+            });
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Заменяет записи страницы новыми, сохраняя её id: старые записи убираются из памяти
+     * и скрываются во всех уже выделенных сегментах, новые попадают в память.
+     */
+    public void replacePage(int pageId, Collection<Integer> oldLemmaIds, Collection<IndexEntry> entries) {
+        swapLock.readLock().lock();
+        try {
+            for (Integer lemmaId : oldLemmaIds) {
+                removeFromMemory(active, lemmaId, pageId);
+                removeFromMemory(flushing, lemmaId, pageId);
+            }
+            if (segmentStore.isOpen()) {
+                segmentStore.markDeleted(pageId, segmentStore.lastGeneration());
+            }
+            if (!entries.isEmpty()) {
+                add(entries);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        synchronized (flushLock) {
+            swapLock.writeLock().lock();
+            try {
+                active = new ConcurrentHashMap<>();
+                flushing = Map.of();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            segmentStore.deleteAll();
+        }
+    }
+
+    /**
+     * Сбрасывает накопленные в памяти списки в новый сегмент на диске.
+     */
+    public void flushSegment() {
+        if (!segmentStore.isEnabled() || !segmentStore.isOpen()) {
+            return;
+        }
+        synchronized (flushLock) {
+            Map<Integer, PostingList> toFlush;
+            long generation;
+            swapLock.writeLock().lock();
+            try {
+                toFlush = active;
+                flushing = toFlush;
+                active = new ConcurrentHashMap<>();
+                generation = segmentStore.reserveGeneration();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            if (toFlush.isEmpty()) {
+                flushing = Map.of();
+                return;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                int[] lemmaIds = toFlush.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+                segmentStore.write(generation, lemmaIds, lemmaId -> toFlush.get(lemmaId).snapshot().cursor());
+                log.info("Сегмент индекса записан: лемм {}, {} мс", lemmaIds.length, System.currentTimeMillis() - start);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Не удалось записать сегмент индекса, данные остаются в памяти", e);
+                returnToActive(toFlush);
+            }
+            flushing = Map.of();
+        }
+    }
+
+    public long sizeInBytes() {
+        return active.values().stream().mapToLong(list -> list.snapshot().sizeInBytes()).sum();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (ready) {
+            flushSegment();
+        }
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        try {
+            if (segmentStore.isEnabled()) {
+                segmentStore.open();
+                loadPagesMissingFromSegments();
+            } else {
+                loadSorted();
+            }
+            ready = true;
+            log.info("Обратный индекс готов: сегментов {}, лемм в памяти {} ({} КБ), {} мс",
+                    segmentStore.getSegments().size(), active.size(), sizeInBytes() / 1024,
+                    System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось построить обратный индекс, поиск будет идти через БД", e);
+        }
+    }
+
+    /**
+     * Дочитывает из БД индексы страниц, которых нет среди видимых записей сегментов:
+     * записанных или переиндексированных после последнего сброса сегмента.
+     */
+    private void loadPagesMissingFromSegments() {
+        BitSet segmentPages = new BitSet();
+        for (IndexSegment segment : segmentStore.getSegments()) {
+            for (int pageId : segment.pageIds()) {
+                if (!segmentStore.isDeleted(pageId, segment.getGeneration())) {
+                    segmentPages.set(pageId);
+                }
+            }
+        }
+        List<Integer> missing = pageEntityRepository.getAllPageIds().stream()
+                .filter(pageId -> !segmentPages.get(pageId))
+                .toList();
+        for (int from = 0; from < missing.size(); from += IN_CHUNK_SIZE) {
+            List<IndexEntry> entries = indexRepository
+                    .getIndexRowsByPageIdIn(missing.subList(from, Math.min(from + IN_CHUNK_SIZE, missing.size())))
+                    .stream()
+                    .map(row -> new IndexEntry(row.getLemmaId(), row.getPageId(), row.getRank()))
+                    .toList();
+            add(entries);
+        }
+        if (!missing.isEmpty()) {
+            log.info("Из БД дочитано страниц вне сегментов: {}", missing.size());
+        }
+    }
+
+    /**
+     * Читает indexPage страницами по ключу (lemma_id, page_id), не держа всю таблицу в памяти.
+     */
+    private void loadSorted() {
+        int[] pageIds = new int[1024];
+        float[] ranks = new float[1024];
+        int count = 0;
+        int currentLemma = -1;
+        int lastPage = 0;
+        List<IndexRepository.IndexRow> rows;
+        do {
+            rows = indexRepository.getIndexRowsAfter(Math.max(currentLemma, 0), lastPage, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (IndexRepository.IndexRow row : rows) {
+                if (row.getLemmaId() != currentLemma) {
+                    flush(currentLemma, pageIds, ranks, count);
+                    currentLemma = row.getLemmaId();
+                    count = 0;
+                }
+                if (count == pageIds.length) {
+                    pageIds = Arrays.copyOf(pageIds, count * 2);
+                    ranks = Arrays.copyOf(ranks, count * 2);
+                }
+                pageIds[count] = row.getPageId();
+                ranks[count] = row.getRank();
+                lastPage = row.getPageId();
+                count++;
+            }
+        } while (rows.size() == LOAD_PAGE_SIZE);
+        flush(currentLemma, pageIds, ranks, count);
+    }
+
+    private void flush(int lemmaId, int[] pageIds, float[] ranks, int count) {
+        if (count > 0) {
+            swapLock.readLock().lock();
+            try {
+                addToActive(lemmaId, pageIds, ranks, count);
+            } finally {
+                swapLock.readLock().unlock();
+            }
+        }
+    }
+
+    private void addToActive(int lemmaId, int[] pageIds, float[] ranks, int count) {
+        active.computeIfAbsent(lemmaId, id -> new PostingList()).add(pageIds, ranks, count);
+    }
+
+    private void returnToActive(Map<Integer, PostingList> lists) {
+        swapLock.readLock().lock();
+        try {
+            lists.forEach((lemmaId, list) -> {
+                PostingList.Snapshot snapshot = list.snapshot();
+                int[] pageIds = new int[snapshot.size()];
+                float[] ranks = new float[snapshot.size()];
+                PostingList.Cursor cursor = snapshot.cursor();
+                for (int i = 0; cursor.next(); i++) {
+                    pageIds[i] = cursor.doc();
+                    ranks[i] = cursor.rank();
+                }
+                addToActive(lemmaId, pageIds, ranks, pageIds.length);
+            });
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static void addMemoryCursor(Map<Integer, PostingList> lists, int lemmaId, List<PostingCursor> sources) {
+        PostingList list = lists.get(lemmaId);
+        if (list != null && list.size() > 0) {
+            sources.add(list.snapshot().cursor());
+        }
+    }
+
+    private static int memorySize(Map<Integer, PostingList> lists, int lemmaId) {
+        PostingList list = lists.get(lemmaId);
+        return list == null ? 0 : list.size();
+    }
+
+    private static float memoryMaxRank(Map<Integer, PostingList> lists, int lemmaId) {
+        PostingList list = lists.get(lemmaId);
+        return list == null ? 0 : list.snapshot().maxRank();
+    }
+
+    private static void removeFromMemory(Map<Integer, PostingList> lists, int lemmaId, int pageId) {
+        PostingList list = lists.get(lemmaId);
+        if (list != null) {
+            list.remove(pageId);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package searchengine.services.index;
+
+/**
+ * Обход списка страниц леммы по возрастанию id страницы.
+ * До первого {@link #next()} или {@link #advance(int)} курсор стоит перед первой записью.
+ */
+public interface PostingCursor {
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    int doc();
+
+    float rank();
+
+    boolean next();
+
+    /**
+     * Переходит к первой записи с id страницы не меньше target.
+     */
+    boolean advance(int target);
+}
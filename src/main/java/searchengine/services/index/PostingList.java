@@ -0,0 +1,262 @@
+package searchengine.services.index;
+
+import java.util.Arrays;
+
+/**
+ * Список страниц одной леммы: возрастающие id страниц, закодированные разностями в varint,
+ * и параллельный массив рангов. Каждые {@value #SKIP_INTERVAL} записей запоминается точка
+ * пропуска, чтобы {@link Cursor#advance(int)} не декодировал список целиком.
+ * <p>
+ * Читатели работают с неизменяемым {@link Snapshot}. Запись синхронизирована: новые элементы
+ * дописываются за границу, видимую старым снимкам, после чего публикуется новый снимок.
+ */
+public class PostingList {
+    static final int SKIP_INTERVAL = 128;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    /**
+     * Добавляет записи, отсортированные по id страницы. Если все они правее последней записи,
+     * они дописываются в конец, иначе список пересобирается; при совпадении id побеждает новый ранг.
+     */
+    public synchronized void add(int[] pageIds, float[] ranks, int count) {
+        if (count == 0) {
+            return;
+        }
+        Snapshot current = snapshot;
+        if (current.size == 0 || pageIds[0] > current.lastDoc) {
+            snapshot = append(current, pageIds, ranks, count);
+        } else {
+            Entries merged = mergeWith(current, pageIds, ranks, count, -1);
+            snapshot = append(Snapshot.EMPTY, merged.pageIds(), merged.ranks(), merged.count());
+        }
+    }
+
+    public synchronized void remove(int pageId) {
+        Snapshot current = snapshot;
+        Cursor cursor = current.cursor();
+        if (cursor.advance(pageId) && cursor.doc() == pageId) {
+            Entries merged = mergeWith(current, new int[0], new float[0], 0, pageId);
+            snapshot = append(Snapshot.EMPTY, merged.pageIds(), merged.ranks(), merged.count());
+        }
+    }
+
+    private static Snapshot append(Snapshot base, int[] pageIds, float[] ranks, int count) {
+        byte[] docs = base.docs;
+        float[] rankValues = base.ranks;
+        int[] skipDocs = base.skipDocs;
+        int[] skipOffsets = base.skipOffsets;
+        int byteLength = base.byteLength;
+        int size = base.size;
+        int lastDoc = base.lastDoc;
+        float maxRank = base.maxRank;
+        for (int i = 0; i < count; i++) {
+            if (pageIds[i] <= lastDoc) {
+                continue;
+            }
+            if (docs.length - byteLength < 5) {
+                docs = Arrays.copyOf(docs, Math.max(16, docs.length * 2));
+            }
+            if (size == rankValues.length) {
+                rankValues = Arrays.copyOf(rankValues, Math.max(4, size * 2));
+            }
+            if (size % SKIP_INTERVAL == 0) {
+                int skip = size / SKIP_INTERVAL;
+                if (skip == skipDocs.length) {
+                    skipDocs = Arrays.copyOf(skipDocs, Math.max(1, skip * 2));
+                    skipOffsets = Arrays.copyOf(skipOffsets, Math.max(1, skip * 2));
+                }
+                skipDocs[skip] = pageIds[i];
+                skipOffsets[skip] = byteLength;
+            }
+            byteLength = writeVarint(docs, byteLength, pageIds[i] - lastDoc);
+            rankValues[size] = ranks[i];
+            maxRank = Math.max(maxRank, ranks[i]);
+            lastDoc = pageIds[i];
+            size++;
+        }
+        return new Snapshot(docs, byteLength, rankValues, size, lastDoc, skipDocs, skipOffsets, maxRank);
+    }
+
+    /**
+     * Сливает снимок с новыми записями, пропуская страницу excludedPageId.
+     */
+    private static Entries mergeWith(Snapshot base, int[] pageIds, float[] ranks, int count, int excludedPageId) {
+        int[] mergedIds = new int[base.size + count];
+        float[] mergedRanks = new float[base.size + count];
+        int n = 0;
+        int i = 0;
+        Cursor cursor = base.cursor();
+        boolean hasBase = cursor.next();
+        while (hasBase || i < count) {
+            int doc;
+            float rank;
+            if (!hasBase || (i < count && pageIds[i] <= cursor.doc())) {
+                doc = pageIds[i];
+                rank = ranks[i];
+                if (hasBase && cursor.doc() == doc) {
+                    hasBase = cursor.next();
+                }
+                i++;
+            } else {
+                doc = cursor.doc();
+                rank = cursor.rank();
+                hasBase = cursor.next();
+            }
+            if (doc == excludedPageId || (n > 0 && mergedIds[n - 1] == doc)) {
+                continue;
+            }
+            mergedIds[n] = doc;
+            mergedRanks[n] = rank;
+            n++;
+        }
+        return new Entries(mergedIds, mergedRanks, n);
+    }
+
+    private static int writeVarint(byte[] target, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[offset++] = (byte) value;
+        return offset;
+    }
+
+    private record Entries(int[] pageIds, float[] ranks, int count) {
+    }
+
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new byte[0], 0, new float[0], 0, 0,
+                new int[0], new int[0], 0);
+
+        private final byte[] docs;
+        private final int byteLength;
+        private final float[] ranks;
+        private final int size;
+        private final int lastDoc;
+        private final int[] skipDocs;
+        private final int[] skipOffsets;
+        private final float maxRank;
+
+        private Snapshot(byte[] docs, int byteLength, float[] ranks, int size, int lastDoc,
+                         int[] skipDocs, int[] skipOffsets, float maxRank) {
+            this.docs = docs;
+            this.byteLength = byteLength;
+            this.ranks = ranks;
+            this.size = size;
+            this.lastDoc = lastDoc;
+            this.skipDocs = skipDocs;
+            this.skipOffsets = skipOffsets;
+            this.maxRank = maxRank;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public float maxRank() {
+            return maxRank;
+        }
+
+        /**
+         * Приблизительный объём занимаемой памяти в байтах.
+         */
+        public long sizeInBytes() {
+            return docs.length + 4L * ranks.length + 8L * skipDocs.length;
+        }
+
+        public Cursor cursor() {
+            return new Cursor(this);
+        }
+    }
+
+    public static final class Cursor implements PostingCursor {
+        private final Snapshot snapshot;
+        private int index = -1;
+        private int offset;
+        private int doc;
+
+        private Cursor(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public int doc() {
+            return index < 0 ? -1 : doc;
+        }
+
+        @Override
+        public float rank() {
+            return snapshot.ranks[index];
+        }
+
+        @Override
+        public boolean next() {
+            if (index + 1 >= snapshot.size) {
+                index = snapshot.size;
+                doc = NO_MORE_DOCS;
+                return false;
+            }
+            index++;
+            doc += readVarint();
+            return true;
+        }
+
+        @Override
+        public boolean advance(int target) {
+            if (index >= 0 && doc >= target) {
+                return doc != NO_MORE_DOCS;
+            }
+            int skip = findSkip(target);
+            if (skip >= 0 && skip * SKIP_INTERVAL > index) {
+                index = skip * SKIP_INTERVAL;
+                offset = snapshot.skipOffsets[skip];
+                readVarint();
+                doc = snapshot.skipDocs[skip];
+            }
+            while (index < 0 || doc < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int findSkip(int target) {
+            int low = 0;
+            int high = (snapshot.size + SKIP_INTERVAL - 1) / SKIP_INTERVAL - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (snapshot.skipDocs[mid] <= target) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        private int readVarint() {
+            byte[] docs = snapshot.docs;
+            int value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = docs[offset++];
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package searchengine.services.index;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexSettings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Каталог сегментов обратного индекса. Сегменты неизменяемы: новые данные пишутся новым сегментом,
+ * удалённые страницы запоминаются в файле deleted-pages.bin (пары int pageId, long поколение)
+ * и отфильтровываются при чтении, а фоновое слияние объединяет мелкие сегменты и выбрасывает удалённые страницы.
+ * Удаление скрывает страницу только в сегментах, поколение которых не больше записанного:
+ * так переиндексированная страница сохраняет id, а её новые записи из памяти и более поздних сегментов видны.
+ */
+@Slf4j
+@Component
+public class SegmentStore {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DELETES_FILE = "deleted-pages.bin";
+
+    private final IndexSettings settings;
+    private final Map<Integer, Long> deletedPages = new ConcurrentHashMap<>();
+    private volatile List<IndexSegment> segments = List.of();
+    private volatile boolean open;
+    private long generation;
+    private long epoch;
+    private DataOutputStream deletesOut;
+    private ScheduledExecutorService merger;
+
+    public SegmentStore(IndexSettings settings) {
+        this.settings = settings;
+    }
+
+    public boolean isEnabled() {
+        return settings.isSegmentsEnabled();
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public List<IndexSegment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Скрыта ли страница в сегменте данного поколения.
+     */
+    public boolean isDeleted(int pageId, long segmentGeneration) {
+        Long deletedUpTo = deletedPages.get(pageId);
+        return deletedUpTo != null && deletedUpTo >= segmentGeneration;
+    }
+
+    /**
+     * Курсор леммы в сегменте без удалённых страниц; null, если леммы в сегменте нет.
+     */
+    public PostingCursor cursor(IndexSegment segment, int lemmaId) {
+        PostingCursor cursor = segment.cursor(lemmaId);
+        if (cursor == null || deletedPages.isEmpty()) {
+            return cursor;
+        }
+        long generation = segment.getGeneration();
+        return new FilteredCursor(cursor, pageId -> isDeleted(pageId, generation));
+    }
+
+    /**
+     * Резервирует поколение для следующего сегмента. Вызывается в момент, когда данные для него
+     * уже отделены от изменяемых, чтобы последующие удаления скрывали страницы и в нём.
+     */
+    public synchronized long reserveGeneration() {
+        return ++generation;
+    }
+
+    /**
+     * Последнее выданное поколение, включая сегменты, которые ещё пишутся.
+     */
+    public synchronized long lastGeneration() {
+        return generation;
+    }
+
+    public synchronized void open() throws IOException {
+        Path directory = directory();
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path tmp : files.filter(path -> path.toString().endsWith(".tmp")).toList()) {
+                Files.delete(tmp);
+            }
+        }
+        List<IndexSegment> loaded = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(this::isSegmentFile).sorted().toList()) {
+                loaded.add(IndexSegment.open(path, generationOf(path)));
+                generation = Math.max(generation, generationOf(path));
+            }
+        }
+        loadDeletes(directory.resolve(DELETES_FILE));
+        deletesOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(DELETES_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        segments = List.copyOf(loaded);
+        open = true;
+        merger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-segment-merger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, settings.getMergeIntervalSeconds());
+        merger.scheduleWithFixedDelay(this::mergeIfNeeded, interval, interval, TimeUnit.SECONDS);
+        log.info("Загружено сегментов индекса: {}, удалённых страниц: {}", loaded.size(), deletedPages.size());
+    }
+
+    /**
+     * Пишет новый сегмент с заранее зарезервированным поколением и делает его видимым для поиска.
+     */
+    public void write(long segmentGeneration, int[] lemmaIds, IntFunction<PostingCursor> cursorFor) throws IOException {
+        Path path;
+        long writeEpoch;
+        synchronized (this) {
+            path = directory().resolve(segmentName(segmentGeneration));
+            writeEpoch = epoch;
+        }
+        IndexSegment.write(path, lemmaIds, cursorFor);
+        publish(IndexSegment.open(path, segmentGeneration), List.of(), writeEpoch);
+    }
+
+    /**
+     * Скрывает страницу во всех сегментах с поколением до upToGeneration включительно.
+     */
+    public synchronized void markDeleted(int pageId, long upToGeneration) {
+        if (!open) {
+            return;
+        }
+        Long previous = deletedPages.get(pageId);
+        if (previous != null && previous >= upToGeneration) {
+            return;
+        }
+        deletedPages.put(pageId, upToGeneration);
+        try {
+            deletesOut.writeInt(pageId);
+            deletesOut.writeLong(upToGeneration);
+            deletesOut.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Удаляет все сегменты, например перед полной переиндексацией.
+     */
+    public synchronized void deleteAll() {
+        if (!open) {
+            return;
+        }
+        epoch++;
+        List<IndexSegment> removed = segments;
+        segments = List.of();
+        deletedPages.clear();
+        try {
+            deletesOut.close();
+            deletesOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory().resolve(DELETES_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deleteFiles(removed);
+    }
+
+    void mergeIfNeeded() {
+        List<IndexSegment> current = segments;
+        if (current.size() <= Math.max(1, settings.getMaxSegments())) {
+            return;
+        }
+        List<IndexSegment> toMerge = new ArrayList<>();
+        long totalBytes = 0;
+        for (IndexSegment segment : current.stream().sorted(Comparator.comparingLong(IndexSegment::sizeInBytes)).toList()) {
+            if (totalBytes + segment.sizeInBytes() > IndexSegment.MAX_SEGMENT_BYTES) {
+                break;
+            }
+            toMerge.add(segment);
+            totalBytes += segment.sizeInBytes();
+        }
+        if (toMerge.size() < 2) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Path path;
+            long mergeEpoch;
+            long mergeGeneration;
+            synchronized (this) {
+                mergeGeneration = ++generation;
+                path = directory().resolve(segmentName(mergeGeneration));
+                mergeEpoch = epoch;
+            }
+            int[] lemmaIds = toMerge.stream().flatMapToInt(segment -> IntStream.of(segment.lemmaIds()))
+                    .distinct().sorted().toArray();
+            IndexSegment.write(path, lemmaIds, lemmaId -> new UnionCursor(toMerge.stream()
+                    .sorted(Comparator.comparingLong(IndexSegment::getGeneration).reversed())
+                    .map(segment -> cursor(segment, lemmaId))
+                    .filter(cursor -> cursor != null)
+                    .toList()));
+            if (publish(IndexSegment.open(path, mergeGeneration), toMerge, mergeEpoch)) {
+                log.info("Слито сегментов: {} за {} мс", toMerge.size(), System.currentTimeMillis() - start);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ошибка при слиянии сегментов индекса", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (merger != null) {
+            merger.shutdownNow();
+        }
+        if (deletesOut != null) {
+            deletesOut.close();
+        }
+        open = false;
+    }
+
+    /**
+     * Заменяет replaced на segment. Если после начала записи индекс был очищен, результат выбрасывается.
+     */
+    private synchronized boolean publish(IndexSegment segment, List<IndexSegment> replaced, long writeEpoch) {
+        if (writeEpoch != epoch) {
+            deleteFiles(List.of(segment));
+            return false;
+        }
+        List<IndexSegment> updated = new ArrayList<>(segments);
+        updated.removeAll(replaced);
+        updated.add(segment);
+        segments = List.copyOf(updated);
+        deleteFiles(replaced);
+        return true;
+    }
+
+    private void loadDeletes(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(file);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            while (true) {
+                deletedPages.merge(data.readInt(), data.readLong(), Math::max);
+            }
+        } catch (EOFException e) {
+            // конец файла
+        }
+    }
+
+    private void deleteFiles(List<IndexSegment> removed) {
+        for (IndexSegment segment : removed) {
+            try {
+                Files.deleteIfExists(segment.getPath());
+            } catch (IOException e) {
+                log.warn("Не удалось удалить сегмент {}", segment.getPath(), e);
+            }
+        }
+    }
+
+    private boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long generationOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String segmentName(long generation) {
+        return SEGMENT_PREFIX + String.format("%012d", generation) + SEGMENT_SUFFIX;
+    }
+
+    private Path directory() {
+        return Paths.get(settings.getSegmentsDir());
+    }
+}
@@ -0,0 +1,61 @@
+package searchengine.services.index;
+
+import java.util.List;
+
+/**
+ * Объединение курсоров одной леммы из нескольких источников (память, сегменты).
+ * Одна и та же страница может ненадолго оказаться в двух источниках - берётся первый по списку.
+ * Удалённые страницы отфильтровываются в самих источниках ({@link FilteredCursor}).
+ */
+public class UnionCursor implements PostingCursor {
+    private final List<PostingCursor> cursors;
+    private final boolean[] positioned;
+    private int doc = -1;
+    private float rank;
+
+    public UnionCursor(List<PostingCursor> cursors) {
+        this.cursors = cursors;
+        this.positioned = new boolean[cursors.size()];
+    }
+
+    @Override
+    public int doc() {
+        return doc;
+    }
+
+    @Override
+    public float rank() {
+        return rank;
+    }
+
+    @Override
+    public boolean next() {
+        return advance(doc + 1);
+    }
+
+    @Override
+    public boolean advance(int target) {
+        if (doc == NO_MORE_DOCS) {
+            return false;
+        }
+        if (doc >= target) {
+            return true;
+        }
+        int best = NO_MORE_DOCS;
+        float bestRank = 0;
+        for (int i = 0; i < cursors.size(); i++) {
+            PostingCursor cursor = cursors.get(i);
+            if (!positioned[i] || cursor.doc() < target) {
+                positioned[i] = true;
+                cursor.advance(target);
+            }
+            if (cursor.doc() < best) {
+                best = cursor.doc();
+                bestRank = cursor.rank();
+            }
+        }
+        doc = best;
+        rank = bestRank;
+        return best != NO_MORE_DOCS;
+    }
+}
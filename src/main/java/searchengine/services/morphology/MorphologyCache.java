@@ -0,0 +1,97 @@
+package searchengine.services.morphology;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import searchengine.config.MorphologySettings;
+
+import java.util.List;
+
+/**
+ * Кэш результатов морфологии: словоформа -> нормальная форма и признак служебной части речи.
+ * Частоты слов в тексте распределены по Ципфу, поэтому ограниченный кэш с вытеснением W-TinyLFU
+ * снимает большую часть обращений к словарю. Общий для индексации и поиска.
+ */
+@Component
+public class MorphologyCache {
+    private static final String[] PARTICLES = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ"};
+    private static final String[] ENGLISH_PARTICLES = new String[]{"CONJ", "PREP", "INT", "ARTICLE"};
+
+    private final LuceneMorphology luceneMorphology;
+    private final LuceneMorphology englishMorphology;
+    private final LoadingCache<String, WordForm> cache;
+
+    public MorphologyCache(LuceneMorphology luceneMorphology,
+                           ObjectProvider<EnglishLuceneMorphology> englishMorphology,
+                           MorphologySettings settings) {
+        this.luceneMorphology = luceneMorphology;
+        this.englishMorphology = settings.isEnglishEnabled() ? englishMorphology.getIfAvailable() : null;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(settings.getCacheSize())
+                .recordStats()
+                .build(this::analyze);
+    }
+
+    /**
+     * Разбирать ли латинские слова: включено в настройках и словарь загружен.
+     */
+    public boolean isEnglishEnabled() {
+        return englishMorphology != null;
+    }
+
+    /**
+     * @param word слово в нижнем регистре из букв одного алфавита, как его выдаёт {@link Tokenizer}
+     */
+    public WordForm get(String word) {
+        return cache.get(word);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private WordForm analyze(String word) {
+        boolean cyrillic = Tokenizer.isCyrillic(word);
+        LuceneMorphology morphology = cyrillic ? luceneMorphology : englishMorphology;
+        if (morphology == null) {
+            return new WordForm(null, false);
+        }
+        String[] particles = cyrillic ? PARTICLES : ENGLISH_PARTICLES;
+        List<String> morphInfo = morphology.getMorphInfo(word);
+        boolean particle = morphInfo.stream().anyMatch(wordBase -> containsAny(wordBase, particles));
+        String normalForm = null;
+        if (!particle) {
+            List<String> normalForms = morphology.getNormalForms(word);
+            normalForm = normalForms.isEmpty() ? null : normalForms.get(0);
+        }
+        return new WordForm(normalForm, particle);
+    }
+
+    private static boolean containsAny(String wordBase, String[] properties) {
+        for (String property : properties) {
+            if (wordBase.contains(property)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param normalForm  первая нормальная форма; null для частиц и слов без нормальной формы
+     * @param particle    хотя бы одна из форм - междометие, предлог или союз (в индекс не попадает)
+     */
+    public record WordForm(String normalForm, boolean particle) {
+    }
+}
@@ -0,0 +1,133 @@
+package searchengine.services.morphology;
+
+/**
+ * Потоковый разбор текста на слова без регулярных выражений и промежуточных строк.
+ * Словом считается непрерывная последовательность букв одного алфавита: кириллицы
+ * или, если включено, латиницы. Буквы приводятся к нижнему регистру, ё заменяется на е.
+ * Слово передаётся потребителю как представление над переиспользуемым буфером и
+ * действительно только до возврата из {@link TokenSink#accept}.
+ */
+public final class Tokenizer {
+    /**
+     * Слова длиннее этого заведомо не словарные (склейки, base64 и т.п.) и пропускаются.
+     */
+    static final int MAX_TOKEN_LENGTH = 40;
+
+    private Tokenizer() {
+    }
+
+    @FunctionalInterface
+    public interface TokenSink {
+        void accept(CharSequence token);
+    }
+
+    /**
+     * Получатель слов вместе с их границами [start, end) в исходном тексте.
+     */
+    @FunctionalInterface
+    public interface PositionedTokenSink {
+        void accept(CharSequence token, int start, int end);
+    }
+
+    public static void tokenize(CharSequence text, boolean latin, TokenSink sink) {
+        tokenize(text, latin, (token, start, end) -> sink.accept(token));
+    }
+
+    public static void tokenize(CharSequence text, boolean latin, PositionedTokenSink sink) {
+        Token token = new Token();
+        boolean tokenLatin = false;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            char cyrillic = cyrillicLower(c);
+            if (cyrillic != 0) {
+                if (tokenLatin) {
+                    token.emit(sink, i);
+                }
+                tokenLatin = false;
+                token.append(cyrillic);
+                continue;
+            }
+            char ascii = latin ? latinLower(c) : 0;
+            if (ascii != 0) {
+                if (!tokenLatin) {
+                    token.emit(sink, i);
+                }
+                tokenLatin = true;
+                token.append(ascii);
+                continue;
+            }
+            token.emit(sink, i);
+        }
+        token.emit(sink, length);
+    }
+
+    public static boolean isCyrillic(CharSequence word) {
+        return word.length() > 0 && cyrillicLower(word.charAt(0)) != 0;
+    }
+
+    private static char cyrillicLower(char c) {
+        if (c >= 'а' && c <= 'я') {
+            return c;
+        }
+        if (c >= 'А' && c <= 'Я') {
+            return (char) (c + ('а' - 'А'));
+        }
+        if (c == 'ё' || c == 'Ё') {
+            return 'е';
+        }
+        return 0;
+    }
+
+    private static char latinLower(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        return 0;
+    }
+
+    private static final class Token implements CharSequence {
+        private final char[] chars = new char[MAX_TOKEN_LENGTH];
+        private int length;
+        private boolean overflow;
+
+        void append(char c) {
+            if (length == chars.length) {
+                overflow = true;
+            } else {
+                chars[length++] = c;
+            }
+        }
+
+        void emit(PositionedTokenSink sink, int end) {
+            if (length > 0 && !overflow) {
+                sink.accept(this, end - length, end);
+            }
+            length = 0;
+            overflow = false;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package searchengine.services.morphology;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Счётчик словоформ страницы с открытой адресацией. Ищет по содержимому {@link CharSequence},
+ * поэтому строка создаётся только для первой встречи словоформы, а не для каждого слова текста.
+ */
+public final class WordCounter {
+    private String[] words = new String[256];
+    private int[] hashes = new int[256];
+    private int[] counts = new int[256];
+    private int size;
+
+    public void add(CharSequence word) {
+        int hash = hash(word);
+        int mask = words.length - 1;
+        int slot = mix(hash) & mask;
+        while (words[slot] != null) {
+            if (hashes[slot] == hash && words[slot].contentEquals(word)) {
+                counts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        words[slot] = word.toString();
+        hashes[slot] = hash;
+        counts[slot] = 1;
+        if (++size * 2 > words.length) {
+            grow();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != null) {
+                action.accept(words[i], counts[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        String[] oldWords = words;
+        int[] oldHashes = hashes;
+        int[] oldCounts = counts;
+        words = new String[oldWords.length * 2];
+        hashes = new int[words.length];
+        counts = new int[words.length];
+        int mask = words.length - 1;
+        for (int i = 0; i < oldWords.length; i++) {
+            if (oldWords[i] != null) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (words[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                words[slot] = oldWords[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int hash(CharSequence word) {
+        int hash = 0;
+        for (int i = 0; i < word.length(); i++) {
+            hash = 31 * hash + word.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+}
@@ -0,0 +1,118 @@
+package searchengine.services.search;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchItem;
+import searchengine.services.index.IndexGeneration;
+import searchengine.services.statistics.SearchEngineMetrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Кэш результатов поиска для повторяющихся запросов. Ключ - отсортированные леммы запроса, сайт
+ * и поколение индекса ({@link IndexGeneration}), поэтому после переиндексации старые записи больше не находятся
+ * и вытесняются как невостребованные.
+ * Ранжирование (лучшие страницы и общее число найденных) хранится отдельно от готовых страниц выдачи
+ * со сниппетами: следующая страница выдачи того же запроса берёт ранжирование из кэша и строит только свои сниппеты.
+ * В кэше лежат будущие результаты: при промахе считает поток, положивший свой future, вне блокировок кэша,
+ * а одновременные одинаковые запросы ждут этот же результат.
+ */
+@Component
+public class SearchResultCache {
+    private final IndexGeneration indexGeneration;
+    private final AsyncCache<Query, Ranking> ranked;
+    private final AsyncCache<Window, List<SearchItem>> items;
+
+    /**
+     * @param lemmas леммы запроса по алфавиту
+     * @param site   адрес сайта или пустая строка для поиска по всем сайтам
+     */
+    public record Query(List<String> lemmas, String site, long generation) {
+    }
+
+    /**
+     * Лучшие страницы запроса по убыванию релевантности и общее число найденных страниц.
+     *
+     * @param depth сколько лучших страниц запрашивалось; страниц в top меньше, если столько не нашлось
+     */
+    public record Ranking(List<Map.Entry<Integer, Float>> top, int total, int depth) {
+    }
+
+    private record Window(Query query, int offset, int limit) {
+    }
+
+    public SearchResultCache(SearchSettings searchSettings, IndexGeneration indexGeneration,
+                             SearchEngineMetrics metrics) {
+        this.indexGeneration = indexGeneration;
+        this.ranked = Caffeine.newBuilder()
+                .maximumWeight(searchSettings.getResultCacheMaxPages())
+                .weigher((Query query, Ranking ranking) -> ranking.top().size() + 1)
+                .recordStats()
+                .buildAsync();
+        this.items = Caffeine.newBuilder()
+                .maximumSize(searchSettings.getSnippetCacheSize())
+                .recordStats()
+                .buildAsync();
+        metrics.searchCache("ranked", ranked.synchronous());
+        metrics.searchCache("items", items.synchronous());
+    }
+
+    public Query query(Set<String> lemmas, String site) {
+        return new Query(lemmas.stream().sorted().toList(), site == null ? "" : site, indexGeneration.current());
+    }
+
+    /**
+     * Не меньше depth лучших страниц запроса; при промахе они считаются ranking.
+     * Если в кэше ранжирование меньшей глубины, оно пересчитывается не меньше чем вдвое глубже,
+     * чтобы листание выдачи вперёд не пересчитывало его на каждой странице.
+     */
+    public Ranking ranked(Query query, int depth, IntFunction<Ranking> ranking) {
+        Ranking cached = get(ranked, query, () -> ranking.apply(depth));
+        if (cached.depth() < depth) {
+            cached = ranking.apply((int) Math.min(Integer.MAX_VALUE, Math.max(depth, 2L * cached.depth())));
+            ranked.put(query, CompletableFuture.completedFuture(cached));
+        }
+        return cached;
+    }
+
+    /**
+     * Страница выдачи запроса; при промахе строится builder.
+     */
+    public List<SearchItem> items(Query query, int offset, int limit, Supplier<List<SearchItem>> builder) {
+        return get(items, new Window(query, offset, limit), builder);
+    }
+
+    /**
+     * Значение из кэша или посчитанное loader в текущем потоке. Кэш при промахе получает только
+     * незавершённый future, поэтому долгий подсчёт не держит блокировку его внутренней таблицы.
+     * Неудачный future Caffeine удаляет сам, и следующий запрос считает заново.
+     */
+    private static <K, V> V get(AsyncCache<K, V> cache, K key, Supplier<V> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> future = cache.get(key, (k, executor) -> created);
+        if (future == created) {
+            try {
+                created.complete(loader.get());
+            } catch (RuntimeException | Error e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
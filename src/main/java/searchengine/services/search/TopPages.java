@@ -0,0 +1,110 @@
+package searchengine.services.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Лучшие страницы выдачи: куча ограниченного размера, в вершине которой худшая из отобранных.
+ * Порядок - по убыванию релевантности, при равной релевантности меньший id страницы выше.
+ * Порог вершины позволяет не считать релевантность страниц, чья верхняя оценка в выдачу не проходит.
+ */
+public class TopPages {
+    private final int capacity;
+    private int[] pageIds;
+    private float[] scores;
+    private int size;
+
+    public TopPages(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.pageIds = new int[Math.min(this.capacity, 256)];
+        this.scores = new float[pageIds.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Не попадёт ли в выдачу страница с id не меньше pageId и релевантностью не больше bound.
+     */
+    public boolean excludes(float bound, int pageId) {
+        return size == capacity && !better(bound, pageId, scores[0], pageIds[0]);
+    }
+
+    public void offer(int pageId, float score) {
+        if (size < capacity) {
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, (int) Math.min(capacity, 2L * size));
+                scores = Arrays.copyOf(scores, pageIds.length);
+            }
+            pageIds[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (better(score, pageId, scores[0], pageIds[0])) {
+            pageIds[0] = pageId;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Отобранные страницы по убыванию релевантности; куча после этого пуста.
+     */
+    public List<Map.Entry<Integer, Float>> drain() {
+        Map.Entry<Integer, Float>[] sorted = newEntries(size);
+        while (size > 0) {
+            sorted[size - 1] = Map.entry(pageIds[0], scores[0]);
+            size--;
+            pageIds[0] = pageIds[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return List.of(sorted);
+    }
+
+    private static boolean better(float score, int pageId, float otherScore, int otherPageId) {
+        return score > otherScore || (score == otherScore && pageId < otherPageId);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(scores[parent], pageIds[parent], scores[index], pageIds[index])) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int worst = index;
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                if (better(scores[worst], pageIds[worst], scores[child], pageIds[child])) {
+                    worst = child;
+                }
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int pageId = pageIds[a];
+        pageIds[a] = pageIds[b];
+        pageIds[b] = pageId;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map.Entry<Integer, Float>[] newEntries(int size) {
+        return new Map.Entry[size];
+    }
+}
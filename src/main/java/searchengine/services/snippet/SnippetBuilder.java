@@ -0,0 +1,160 @@
+package searchengine.services.snippet;
+
+import org.springframework.stereotype.Component;
+import searchengine.services.morphology.MorphologyCache;
+import searchengine.services.morphology.Tokenizer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сниппет по сохранённому при индексации тексту страницы за один проход:
+ * текст разбивается на слова с их смещениями, слова с леммами запроса запоминаются,
+ * и выбирается окно, в которое попадает больше всего разных лемм запроса.
+ * HTML при поиске не разбирается.
+ */
+@Component
+public class SnippetBuilder {
+    static final int SNIPPET_LENGTH = 240;
+    private static final int CONTEXT_BEFORE = 60;
+
+    private final MorphologyCache morphologyCache;
+
+    public SnippetBuilder(MorphologyCache morphologyCache) {
+        this.morphologyCache = morphologyCache;
+    }
+
+    public String build(String text, Set<String> queryLemmas) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        Hits hits = findHits(text, queryLemmas);
+        if (hits.size == 0) {
+            return render(text, 0, wordEnd(text, Math.min(text.length(), SNIPPET_LENGTH)), hits, 0);
+        }
+        int first = bestWindow(hits, queryLemmas.size());
+        int from = Math.min(wordStart(text, Math.max(0, hits.starts[first] - CONTEXT_BEFORE)), hits.starts[first]);
+        int to = wordEnd(text, Math.min(text.length(), from + SNIPPET_LENGTH));
+        return render(text, from, Math.max(to, hits.ends[first]), hits, first);
+    }
+
+    private Hits findHits(String text, Set<String> queryLemmas) {
+        Map<String, Integer> lemmaNumbers = new HashMap<>();
+        for (String lemma : queryLemmas) {
+            lemmaNumbers.put(lemma, lemmaNumbers.size());
+        }
+        Hits hits = new Hits();
+        Tokenizer.tokenize(text, morphologyCache.isEnglishEnabled(), (token, start, end) -> {
+            String normalForm = morphologyCache.get(token.toString()).normalForm();
+            Integer lemmaNumber = normalForm == null ? null : lemmaNumbers.get(normalForm);
+            if (lemmaNumber != null) {
+                hits.add(start, end, lemmaNumber);
+            }
+        });
+        return hits;
+    }
+
+    /**
+     * Первое попадание окна длиной в сниппет с наибольшим числом разных лемм запроса,
+     * при равенстве - с наибольшим числом попаданий. Два указателя, линейно по числу попаданий.
+     */
+    private static int bestWindow(Hits hits, int lemmaCount) {
+        int[] inWindow = new int[lemmaCount];
+        int distinct = 0;
+        int bestFirst = 0;
+        int bestDistinct = 0;
+        int bestHits = 0;
+        int first = 0;
+        for (int last = 0; last < hits.size; last++) {
+            if (inWindow[hits.lemmas[last]]++ == 0) {
+                distinct++;
+            }
+            while (hits.ends[last] - hits.starts[first] > SNIPPET_LENGTH - CONTEXT_BEFORE) {
+                if (--inWindow[hits.lemmas[first]] == 0) {
+                    distinct--;
+                }
+                first++;
+            }
+            int windowHits = last - first + 1;
+            if (distinct > bestDistinct || (distinct == bestDistinct && windowHits > bestHits)) {
+                bestDistinct = distinct;
+                bestHits = windowHits;
+                bestFirst = first;
+            }
+        }
+        return bestFirst;
+    }
+
+    private static String render(String text, int from, int to, Hits hits, int firstHit) {
+        StringBuilder snippet = new StringBuilder(to - from + 32);
+        if (from > 0) {
+            snippet.append("...");
+        }
+        int position = from;
+        for (int i = firstHit; i < hits.size && hits.ends[i] <= to; i++) {
+            if (hits.starts[i] < position) {
+                continue;
+            }
+            appendEscaped(snippet, text, position, hits.starts[i]);
+            snippet.append("<b>");
+            appendEscaped(snippet, text, hits.starts[i], hits.ends[i]);
+            snippet.append("</b>");
+            position = hits.ends[i];
+        }
+        appendEscaped(snippet, text, position, to);
+        if (to < text.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    private static void appendEscaped(StringBuilder snippet, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> snippet.append("&lt;");
+                case '>' -> snippet.append("&gt;");
+                case '&' -> snippet.append("&amp;");
+                case '"' -> snippet.append("&quot;");
+                default -> snippet.append(c);
+            }
+        }
+    }
+
+    private static int wordStart(String text, int position) {
+        if (position == 0) {
+            return 0;
+        }
+        int space = text.indexOf(' ', position);
+        return space < 0 ? position : space + 1;
+    }
+
+    private static int wordEnd(String text, int position) {
+        if (position >= text.length()) {
+            return text.length();
+        }
+        int space = text.lastIndexOf(' ', position);
+        return space <= 0 ? position : space;
+    }
+
+    private static final class Hits {
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int[] lemmas = new int[16];
+        private int size;
+
+        void add(int start, int end, int lemma) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                lemmas = Arrays.copyOf(lemmas, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            lemmas[size] = lemma;
+            size++;
+        }
+    }
+}
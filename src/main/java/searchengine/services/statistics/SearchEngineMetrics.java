@@ -0,0 +1,165 @@
+package searchengine.services.statistics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import searchengine.services.morphology.MorphologyCache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Метрики обхода, индексации и поиска в Micrometer; через Actuator они доступны в /actuator/metrics
+ * и /actuator/prometheus. Распределение кодов ответа - это число загрузок по тегу status у searchengine.crawler.fetch.
+ * Гистограммы для перцентилей включаются в application.yaml (management.metrics.distribution).
+ */
+@Component
+public class SearchEngineMetrics {
+    static final String FETCH = "searchengine.crawler.fetch";
+    static final String PARSE = "searchengine.crawler.parse";
+    static final String LEMMATIZE = "searchengine.crawler.lemmatize";
+    static final String QUEUE = "searchengine.crawler.queue";
+    static final String FLUSH = "searchengine.index.flush";
+    static final String FLUSH_PAGES = "searchengine.index.flush.pages";
+    static final String FLUSH_ROWS = "searchengine.index.flush.rows";
+    static final String FLUSH_ROWS_RATE = "searchengine.index.flush.rows.rate";
+    static final String SEARCH = "searchengine.search";
+    static final String SEARCH_CACHE = "searchengine.search.cache.requests";
+    private static final IntSupplier EMPTY = () -> 0;
+
+    private final MeterRegistry registry;
+    private final Timer parseTimer;
+    private final Timer lemmatizeTimer;
+    private final Timer flushTimer;
+    private final DistributionSummary flushPages;
+    private final DistributionSummary flushRows;
+    private final Map<String, IntSupplier> queues = new ConcurrentHashMap<>();
+
+    public SearchEngineMetrics(MeterRegistry registry, MorphologyCache morphologyCache) {
+        this.registry = registry;
+        this.parseTimer = Timer.builder(PARSE)
+                .description("Разбор страницы: декодирование, ссылки, заголовок и текст")
+                .register(registry);
+        this.lemmatizeTimer = Timer.builder(LEMMATIZE)
+                .description("Лемматизация текста одной страницы")
+                .register(registry);
+        this.flushTimer = Timer.builder(FLUSH)
+                .description("Запись пачки страниц с леммами и индексами, включая фиксацию транзакции")
+                .register(registry);
+        this.flushPages = DistributionSummary.builder(FLUSH_PAGES)
+                .description("Страниц в записанной пачке")
+                .register(registry);
+        this.flushRows = DistributionSummary.builder(FLUSH_ROWS)
+                .description("Строк page, lemma и index_page в записанной пачке")
+                .register(registry);
+        Gauge.builder(FLUSH_ROWS_RATE, this, SearchEngineMetrics::flushRowsPerSecond)
+                .description("Строк в секунду при записи пачек с запуска приложения")
+                .baseUnit("rows/s")
+                .register(registry);
+        FunctionCounter.builder("searchengine.morphology.cache.requests", morphologyCache,
+                        cache -> cache.stats().hitCount())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("searchengine.morphology.cache.requests", morphologyCache,
+                        cache -> cache.stats().missCount())
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("searchengine.morphology.cache.hit.ratio", morphologyCache, MorphologyCache::getHitRate)
+                .description("Доля попаданий в кэш морфологии с запуска приложения")
+                .register(registry);
+        Gauge.builder("searchengine.morphology.cache.size", morphologyCache, MorphologyCache::size)
+                .register(registry);
+    }
+
+    /**
+     * @param status код ответа или -1, если загрузка завершилась ошибкой
+     */
+    public void fetched(String host, int status, long nanos) {
+        Timer.builder(FETCH)
+                .tag("host", host)
+                .tag("status", status < 0 ? "error" : String.valueOf(status))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void parsed(long nanos) {
+        parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void lemmatized(long nanos) {
+        lemmatizeTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void flushed(long nanos, int pages, long rows) {
+        flushTimer.record(nanos, TimeUnit.NANOSECONDS);
+        flushPages.record(pages);
+        flushRows.record(rows);
+    }
+
+    public long flushedRows() {
+        return (long) flushRows.totalAmount();
+    }
+
+    /**
+     * Скорость записи: все записанные строки, делённые на суммарное время записи пачек.
+     */
+    public double flushRowsPerSecond() {
+        double seconds = flushTimer.totalTime(TimeUnit.SECONDS);
+        return seconds == 0 ? 0 : flushRows.totalAmount() / seconds;
+    }
+
+    /**
+     * Размер очереди обхода сайта: frontier - ссылки к загрузке, parse, lemma, write - страницы на стадиях конвейера.
+     * Пока обход сайта не идёт, очередь равна нулю.
+     */
+    public void queue(String site, String queue, IntSupplier depth) {
+        String key = site + ' ' + queue;
+        if (queues.put(key, depth) == null) {
+            Gauge.builder(QUEUE, queues, map -> map.getOrDefault(key, EMPTY).getAsInt())
+                    .tag("site", site)
+                    .tag("queue", queue)
+                    .register(registry);
+        }
+    }
+
+    public void queuesClosed(String site) {
+        queues.replaceAll((key, depth) -> key.startsWith(site + ' ') ? EMPTY : depth);
+    }
+
+    /**
+     * @param stage lemmas - леммы запроса, match - поиск страниц, rank - сортировка,
+     *              load - страницы и тексты, snippets - сниппеты, total - весь запрос
+     */
+    public void searchStage(String stage, long nanos) {
+        Timer.builder(SEARCH)
+                .tag("stage", stage)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Попадания и промахи кэша результатов поиска: ranked - ранжированные страницы, items - страницы выдачи со сниппетами.
+     */
+    public void searchCache(String name, Cache<?, ?> cache) {
+        FunctionCounter.builder(SEARCH_CACHE, cache, c -> c.stats().hitCount())
+                .tag("cache", name)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder(SEARCH_CACHE, cache, c -> c.stats().missCount())
+                .tag("cache", name)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("searchengine.search.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("searchengine.search.cache.size", cache, Cache::estimatedSize)
+                .tag("cache", name)
+                .register(registry);
+    }
+}
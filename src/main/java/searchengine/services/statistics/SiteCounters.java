@@ -0,0 +1,170 @@
+package searchengine.services.statistics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.model.SiteEntity;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageEntityRepository;
+import searchengine.repository.SiteEntityRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Число страниц и лемм каждого сайта без COUNT по таблицам page и lemma.
+ * Писатели индекса меняют счётчики в строке site в той же транзакции, что и данные,
+ * и после фиксации - здесь, в памяти. Параллельные писатели одного сайта могут немного
+ * ошибиться в числе новых лемм, поэтому по окончании обхода сайта счётчики пересчитываются точно.
+ * Для идущего обхода здесь же хранятся скорость загрузки и размер очереди.
+ */
+@Slf4j
+@Component
+public class SiteCounters {
+    private final SiteEntityRepository siteEntityRepository;
+    private final PageEntityRepository pageEntityRepository;
+    private final LemmaRepository lemmaRepository;
+    private final Map<Integer, Counters> counters = new ConcurrentHashMap<>();
+
+    public SiteCounters(SiteEntityRepository siteEntityRepository, PageEntityRepository pageEntityRepository,
+                        LemmaRepository lemmaRepository) {
+        this.siteEntityRepository = siteEntityRepository;
+        this.pageEntityRepository = pageEntityRepository;
+        this.lemmaRepository = lemmaRepository;
+    }
+
+    /**
+     * Загружает счётчики из строк site. Сайты с нулевыми счётчиками (например, после добавления колонок)
+     * пересчитываются один раз.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (SiteEntity site : siteEntityRepository.getSiteEntities()) {
+            if (site.getPageCount() == 0) {
+                reconcile(site.getId());
+            } else {
+                counters.computeIfAbsent(site.getId(), id -> new Counters())
+                        .set(site.getPageCount(), site.getLemmaCount());
+            }
+        }
+        log.info("Загружены счётчики {} сайтов", counters.size());
+    }
+
+    /**
+     * Вызывается после фиксации транзакции, которая изменила счётчики в строке site на те же величины.
+     */
+    public void add(int siteId, int pages, int lemmas) {
+        Counters siteCounters = get(siteId);
+        siteCounters.pages.addAndGet(pages);
+        siteCounters.lemmas.addAndGet(lemmas);
+    }
+
+    /**
+     * Точный пересчёт одного сайта: два COUNT за обход, а не на каждый запрос статистики.
+     */
+    public void reconcile(int siteId) {
+        int pages = pageEntityRepository.countPagesBySiteId(siteId);
+        int lemmas = lemmaRepository.countLemmasBySiteId(siteId);
+        siteEntityRepository.updateCounters(siteId, pages, lemmas);
+        get(siteId).set(pages, lemmas);
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+
+    public void crawlStarted(int siteId, IntSupplier queueDepth) {
+        get(siteId).startCrawl(queueDepth);
+    }
+
+    public void crawlFinished(int siteId) {
+        get(siteId).startCrawl(null);
+    }
+
+    public void pageFetched(int siteId) {
+        get(siteId).fetchRate.mark();
+    }
+
+    public Snapshot snapshot(int siteId) {
+        Counters siteCounters = get(siteId);
+        IntSupplier queueDepth = siteCounters.queueDepth;
+        return new Snapshot(siteCounters.pages.get(), siteCounters.lemmas.get(),
+                queueDepth == null ? 0 : siteCounters.fetchRate.perSecond(),
+                queueDepth == null ? 0 : queueDepth.getAsInt());
+    }
+
+    private Counters get(int siteId) {
+        return counters.computeIfAbsent(siteId, id -> new Counters());
+    }
+
+    /**
+     * @param pagesPerSecond скорость загрузки страниц за последние секунды, 0 вне обхода
+     * @param queueDepth     ссылки в очереди обхода и страницы на стадиях конвейера, 0 вне обхода
+     */
+    public record Snapshot(long pages, long lemmas, double pagesPerSecond, int queueDepth) {
+    }
+
+    private static final class Counters {
+        private final AtomicLong pages = new AtomicLong();
+        private final AtomicLong lemmas = new AtomicLong();
+        private final RateMeter fetchRate = new RateMeter();
+        private volatile IntSupplier queueDepth;
+
+        void set(long pageCount, long lemmaCount) {
+            pages.set(pageCount);
+            lemmas.set(lemmaCount);
+        }
+
+        void startCrawl(IntSupplier depth) {
+            queueDepth = depth;
+        }
+    }
+
+    /**
+     * Число событий в секунду по скользящему окну из посекундных корзин.
+     */
+    static final class RateMeter {
+        private static final int WINDOW_SECONDS = 10;
+        private final long[] seconds = new long[WINDOW_SECONDS];
+        private final long[] counts = new long[WINDOW_SECONDS];
+
+        void mark() {
+            mark(nowSecond());
+        }
+
+        synchronized void mark(long second) {
+            int bucket = (int) (second % WINDOW_SECONDS);
+            if (seconds[bucket] != second) {
+                seconds[bucket] = second;
+                counts[bucket] = 0;
+            }
+            counts[bucket]++;
+        }
+
+        double perSecond() {
+            return perSecond(nowSecond());
+        }
+
+        /**
+         * Текущая неполная секунда не учитывается.
+         */
+        synchronized double perSecond(long second) {
+            long total = 0;
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                long age = second - seconds[i];
+                if (age >= 1 && age < WINDOW_SECONDS) {
+                    total += counts[i];
+                }
+            }
+            return (double) total / (WINDOW_SECONDS - 1);
+        }
+
+        private static long nowSecond() {
+            return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        }
+    }
+}
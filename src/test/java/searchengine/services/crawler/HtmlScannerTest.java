@@ -0,0 +1,58 @@
+package searchengine.services.crawler;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HtmlScannerTest {
+    private static final String PAGE = """
+            <!DOCTYPE html>
+            <html lang="ru">
+            <head>
+              <meta charset="utf-8">
+              <title>Новости &amp; события</title>
+              <style>body { color: red; }</style>
+              <script>var a = "<a href='/script'>";</script>
+            </head>
+            <body>
+              <!-- <a href="/comment">скрыто</a> -->
+              <h1>Главная</h1>
+              <p>Первый <b>абзац</b>&nbsp;текста<br>со&#160;ссылкой <a href="/news?id=1">новости</a>.</p>
+              <ul><li><a href='about.html'>О нас</a></li><li><A HREF=https://other.com/x>чужая</A></li></ul>
+              <a name="anchor">без ссылки</a><a href="#top">наверх</a>
+            </body>
+            </html>
+            """;
+
+    @Test
+    public void extractsTextLikeJsoup() {
+        HtmlScanner.Result result = HtmlScanner.scan(PAGE, "https://example.com/section/index.html");
+
+        assertEquals(Jsoup.parse(PAGE).title(), result.title());
+        assertEquals(Jsoup.parse(PAGE).text(), result.text());
+    }
+
+    @Test
+    public void resolvesLinksAgainstPageAndBase() {
+        HtmlScanner.Result result = HtmlScanner.scan(PAGE, "https://example.com/section/index.html");
+        assertEquals(List.of("https://example.com/news?id=1", "https://example.com/section/about.html",
+                "https://other.com/x"), result.links());
+
+        String withBase = "<head><base href=\"https://example.com/docs/\"></head><a href=\"page\">x</a>";
+        assertEquals(List.of("https://example.com/docs/page"),
+                HtmlScanner.scan(withBase, "https://example.com/").links());
+    }
+
+    @Test
+    public void decodesWithHeaderOrMetaCharset() {
+        Charset cp1251 = Charset.forName("windows-1251");
+        byte[] body = "<meta charset=\"windows-1251\"><p>Привет</p>".getBytes(cp1251);
+
+        assertEquals("<meta charset=\"windows-1251\"><p>Привет</p>", HtmlScanner.decode(body, null));
+        assertEquals("Привет", HtmlScanner.scan(HtmlScanner.decode(body, "windows-1251"), "https://example.com/").text());
+    }
+}
@@ -0,0 +1,153 @@
+package searchengine.services.crawler;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpFetcherTest {
+    private static final String PAGE = "<html><title>Тест</title><p>Привет</p></html>";
+    private static final String SITEMAP = "<urlset><url><loc>https://example.com/</loc></url></urlset>";
+    private HttpServer server;
+    private HttpFetcher fetcher;
+    private String baseUrl;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/page", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            byte[] body = PAGE.getBytes(StandardCharsets.UTF_8);
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else if (String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")).contains("gzip")) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                byte[] gzipped = gzip(body);
+                exchange.sendResponseHeaders(200, gzipped.length);
+                exchange.getResponseBody().write(gzipped);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.createContext("/file.pdf", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(new byte[64 * 1024]);
+            } catch (IOException e) {
+                // клиент оборвал загрузку
+            }
+        });
+        server.createContext("/huge", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 64; i++) {
+                    out.write(new byte[1024]);
+                }
+            } catch (IOException e) {
+                // клиент оборвал загрузку
+            }
+        });
+        server.createContext("/sitemap.xml.gz", exchange -> {
+            byte[] body = gzip(gzip(SITEMAP.getBytes(StandardCharsets.UTF_8)));
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/plain.xml.gz", exchange -> {
+            byte[] body = gzip(SITEMAP.getBytes(StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/bomb.xml.gz", exchange -> {
+            byte[] body = gzip(new byte[1024 * 1024]);
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetcher = new HttpFetcher(5_000, 16 * 1024, Set.of("text/html"));
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void fetchesAndDecompressesHtml() throws Exception {
+        HttpFetcher.Response response = fetcher.fetch(baseUrl + "/page", Map.of());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("utf-8", response.charset());
+        assertEquals("\"v1\"", response.header("ETag"));
+        assertEquals(PAGE, new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void returnsNotModifiedForMatchingValidator() throws Exception {
+        HttpFetcher.Response response = fetcher.fetch(baseUrl + "/page", Map.of("If-None-Match", "\"v1\""));
+
+        assertEquals(304, response.statusCode());
+    }
+
+    @Test
+    public void skipsNonHtmlAndOversizedBodies() throws Exception {
+        HttpFetcher.Response pdf = fetcher.fetch(baseUrl + "/file.pdf", Map.of());
+        HttpFetcher.Response huge = fetcher.fetch(baseUrl + "/huge", Map.of());
+
+        assertEquals(200, pdf.statusCode());
+        assertNull(pdf.body());
+        assertEquals(200, huge.statusCode());
+        assertNull(huge.body());
+    }
+
+    @Test
+    public void opensGzippedSitemapWithOrWithoutContentEncoding() throws Exception {
+        for (String path : new String[]{"/sitemap.xml.gz", "/plain.xml.gz", "/page"}) {
+            try (InputStream in = fetcher.openStream(baseUrl + path, 1024 * 1024)) {
+                String expected = path.equals("/page") ? PAGE : SITEMAP;
+                assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.UTF_8), path);
+            }
+        }
+    }
+
+    @Test
+    public void stopsReadingStreamPastLimit() throws Exception {
+        try (InputStream in = fetcher.openStream(baseUrl + "/bomb.xml.gz", 64 * 1024)) {
+            IOException error = assertThrows(IOException.class, in::readAllBytes);
+            assertTrue(error.getMessage().contains("65536"));
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,120 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SitemapParserTest {
+
+    @Test
+    public void readsUrlEntriesWithLastmodAndPriority() throws Exception {
+        String xml = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <url><loc> https://example.com/news </loc><lastmod>2024-05-01</lastmod><priority>0.9</priority></url>
+                  <url><loc>https://example.com/about</loc><lastmod>2024-05-01T10:15+03:00</lastmod></url>
+                  <url><loc>https://example.com/old</loc><lastmod>вчера</lastmod><priority>7</priority></url>
+                </urlset>
+                """;
+        List<SitemapParser.Entry> pages = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+
+        SitemapParser.parse(stream(xml), pages::add, sitemaps::add);
+
+        assertEquals(List.of(
+                new SitemapParser.Entry("https://example.com/news", Instant.parse("2024-05-01T00:00:00Z"), 0.9),
+                new SitemapParser.Entry("https://example.com/about", Instant.parse("2024-05-01T07:15:00Z"),
+                        SitemapParser.DEFAULT_PRIORITY),
+                new SitemapParser.Entry("https://example.com/old", null, SitemapParser.DEFAULT_PRIORITY)), pages);
+        assertEquals(List.of(), sitemaps);
+    }
+
+    @Test
+    public void ignoresImageAndVideoLocations() throws Exception {
+        String xml = """
+                <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9"
+                        xmlns:image="http://www.google.com/schemas/sitemap-image/1.1"
+                        xmlns:video="http://www.google.com/schemas/sitemap-video/1.1">
+                  <url>
+                    <loc>https://example.com/gallery</loc>
+                    <image:image><image:loc>https://example.com/photo.jpg</image:loc></image:image>
+                    <video:video><video:content_loc>https://example.com/clip.mp4</video:content_loc></video:video>
+                    <lastmod>2024-05-01</lastmod>
+                  </url>
+                  <url>
+                    <image:image><image:loc>https://example.com/orphan.jpg</image:loc></image:image>
+                  </url>
+                </urlset>
+                """;
+        List<SitemapParser.Entry> pages = new ArrayList<>();
+
+        SitemapParser.parse(stream(xml), pages::add, sitemap -> {
+            throw new AssertionError(sitemap);
+        });
+
+        assertEquals(List.of(new SitemapParser.Entry("https://example.com/gallery",
+                Instant.parse("2024-05-01T00:00:00Z"), SitemapParser.DEFAULT_PRIORITY)), pages);
+    }
+
+    @Test
+    public void readsNestedSitemapsFromIndex() throws Exception {
+        String xml = """
+                <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <sitemap><loc>https://example.com/sitemap-1.xml</loc><lastmod>2024-05-01</lastmod></sitemap>
+                  <sitemap><loc>https://example.com/sitemap-2.xml.gz</loc></sitemap>
+                </sitemapindex>
+                """;
+        List<String> sitemaps = new ArrayList<>();
+
+        SitemapParser.parse(stream(xml), page -> {
+            throw new AssertionError(page);
+        }, sitemaps::add);
+
+        assertEquals(List.of("https://example.com/sitemap-1.xml", "https://example.com/sitemap-2.xml.gz"), sitemaps);
+    }
+
+    @Test
+    public void readsSitemapDirectivesFromRobots() throws Exception {
+        String robots = """
+                User-agent: *
+                Disallow: /admin
+                Sitemap: https://example.com/sitemap.xml
+                sitemap:https://example.com/news.xml
+                """;
+
+        assertEquals(List.of("https://example.com/sitemap.xml", "https://example.com/news.xml"),
+                SitemapParser.sitemapsFromRobots(new StringReader(robots)));
+        assertNull(SitemapParser.parseLastModified(""));
+    }
+
+    @Test
+    public void frontierReturnsHigherPriorityFirst() throws Exception {
+        CrawlFrontier frontier = new CrawlFrontier("https://example.com/");
+        frontier.add("https://example.com/b");
+        frontier.add("https://example.com/low", 0.1);
+        frontier.add("https://example.com/high", 0.9);
+        frontier.add("https://example.com/c");
+
+        List<String> order = new ArrayList<>();
+        String url;
+        while ((url = frontier.poll(0, TimeUnit.MILLISECONDS)) != null) {
+            order.add(url);
+        }
+
+        assertEquals(List.of("https://example.com/", "https://example.com/high", "https://example.com/b",
+                "https://example.com/c", "https://example.com/low"), order);
+    }
+
+    private static ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,52 @@
+package searchengine.services.crawler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UrlNormalizerTest {
+
+    @Test
+    public void normalizesEquivalentUrlsToOneForm() {
+        String expected = "https://example.com/news/item?a=1&b=2";
+
+        assertEquals(expected, UrlNormalizer.normalize("HTTPS://Example.COM:443/news/./item/?b=2&a=1#top"));
+        assertEquals(expected, UrlNormalizer.normalize("https://example.com//news/old/../item?a=1&&b=2"));
+        assertEquals("http://example.com:8080/", UrlNormalizer.normalize("http://example.com:8080"));
+        assertNull(UrlNormalizer.normalize("mailto:info@example.com"));
+        assertNull(UrlNormalizer.normalize("javascript:void(0)"));
+    }
+
+    @Test
+    public void extractsPathAndHost() {
+        assertEquals("/news/item?a=1", UrlNormalizer.pathOf("https://example.com/news/item?a=1"));
+        assertEquals("/", UrlNormalizer.pathOf("https://example.com/"));
+        assertEquals("example.com", UrlNormalizer.hostOf("https://example.com:8443/news"));
+    }
+
+    @Test
+    public void frontierSkipsDuplicatesAndForeignHosts() {
+        CrawlFrontier frontier = new CrawlFrontier("https://example.com");
+
+        assertFalse(frontier.add("https://example.com/"));
+        assertTrue(frontier.add("https://example.com/a/"));
+        assertFalse(frontier.add("https://EXAMPLE.com/a#section"));
+        assertFalse(frontier.add("https://other.com/a"));
+        assertEquals(2, frontier.size());
+    }
+
+    @Test
+    public void visitedUrlsKeepWorkingAfterSwitchToBloomFilter() {
+        VisitedUrls visited = new VisitedUrls(100, 10_000, 0.001);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(visited.add("https://example.com/page/" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(visited.add("https://example.com/page/" + i));
+        }
+        assertEquals(1000, visited.size());
+    }
+}
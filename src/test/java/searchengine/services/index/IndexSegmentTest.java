@@ -0,0 +1,67 @@
+package searchengine.services.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IndexSegmentTest {
+
+    @Test
+    public void writesAndReadsPostingsThroughMappedFile() throws Exception {
+        PostingList first = new PostingList();
+        int[] pageIds = new int[300];
+        float[] ranks = new float[300];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = i * 2 + 1;
+            ranks[i] = i % 7;
+        }
+        first.add(pageIds, ranks, pageIds.length);
+        PostingList second = new PostingList();
+        second.add(new int[]{3, 599}, new float[]{1.5f, 2.5f}, 2);
+
+        Path dir = Files.createTempDirectory("segments");
+        Path file = dir.resolve("segment-000000000001.seg");
+        IndexSegment.write(file, new int[]{10, 20},
+                lemmaId -> (lemmaId == 10 ? first : second).snapshot().cursor());
+        IndexSegment segment = IndexSegment.open(file, 1);
+
+        assertEquals(300, segment.docCount(10));
+        assertEquals(2, segment.docCount(20));
+        assertNull(segment.cursor(30));
+        assertEquals(1, segment.getGeneration());
+        assertEquals(300, segment.pageIds().length);
+
+        PostingCursor cursor = segment.cursor(10);
+        assertTrue(cursor.advance(400));
+        assertEquals(401, cursor.doc());
+        assertEquals(200 % 7, cursor.rank(), 0f);
+        assertFalse(cursor.advance(600));
+    }
+
+    @Test
+    public void unionSkipsDuplicatesAndDeletedPages() {
+        PostingList newer = new PostingList();
+        newer.add(new int[]{2, 5}, new float[]{9f, 9f}, 2);
+        PostingList older = new PostingList();
+        older.add(new int[]{1, 2, 4}, new float[]{1f, 1f, 1f}, 3);
+
+        UnionCursor union = new UnionCursor(List.of(newer.snapshot().cursor(),
+                new FilteredCursor(older.snapshot().cursor(), pageId -> pageId == 4)));
+
+        assertTrue(union.next());
+        assertEquals(1, union.doc());
+        assertTrue(union.next());
+        assertEquals(2, union.doc());
+        assertEquals(9f, union.rank(), 0f);
+        assertTrue(union.next());
+        assertEquals(5, union.doc());
+        assertFalse(union.next());
+    }
+}
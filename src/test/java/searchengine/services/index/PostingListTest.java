@@ -0,0 +1,66 @@
+package searchengine.services.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PostingListTest {
+
+    @Test
+    public void appendsAndAdvancesAcrossSkipPoints() {
+        PostingList list = new PostingList();
+        int[] pageIds = new int[1000];
+        float[] ranks = new float[1000];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = i * 3 + 1;
+            ranks[i] = i;
+        }
+        list.add(pageIds, ranks, 500);
+        PostingList.Snapshot firstHalf = list.snapshot();
+        list.add(Arrays.copyOfRange(pageIds, 500, 1000),
+                Arrays.copyOfRange(ranks, 500, 1000), 500);
+
+        assertEquals(500, firstHalf.size());
+        assertEquals(1000, list.size());
+        assertEquals(999f, list.snapshot().maxRank(), 0f);
+
+        PostingList.Cursor cursor = list.snapshot().cursor();
+        assertTrue(cursor.advance(2000));
+        assertEquals(2002, cursor.doc());
+        assertEquals(667f, cursor.rank(), 0f);
+        assertTrue(cursor.advance(2002));
+        assertEquals(2002, cursor.doc());
+        assertFalse(cursor.advance(3000));
+
+        PostingList.Cursor oldCursor = firstHalf.cursor();
+        assertFalse(oldCursor.advance(1500));
+    }
+
+    @Test
+    public void mergesOutOfOrderEntriesAndRemovesPages() {
+        PostingList list = new PostingList();
+        list.add(new int[]{10, 20, 30}, new float[]{1, 2, 3}, 3);
+        list.add(new int[]{5, 20, 25}, new float[]{5, 7, 9}, 3);
+        list.remove(30);
+
+        assertEquals(List.of(5, 10, 20, 25), docs(list.snapshot()));
+        PostingList.Cursor cursor = list.snapshot().cursor();
+        assertTrue(cursor.advance(20));
+        assertEquals(7f, cursor.rank(), 0f);
+    }
+
+    private static List<Integer> docs(PostingList.Snapshot snapshot) {
+        List<Integer> docs = new ArrayList<>();
+        PostingList.Cursor cursor = snapshot.cursor();
+        while (cursor.next()) {
+            docs.add(cursor.doc());
+        }
+        return docs;
+    }
+}
@@ -0,0 +1,45 @@
+package searchengine.services.morphology;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TokenizerTest {
+
+    @Test
+    public void splitsOnNonLettersAndFoldsCaseAndYo() {
+        List<String> words = new ArrayList<>();
+        Tokenizer.tokenize("Ещё ОДИН, кто-то;Java2 ёлка", false, word -> words.add(word.toString()));
+
+        assertEquals(List.of("еще", "один", "кто", "то", "елка"), words);
+    }
+
+    @Test
+    public void separatesScriptsWhenLatinEnabled() {
+        List<String> words = new ArrayList<>();
+        Tokenizer.tokenize("SpringБут x " + "а".repeat(Tokenizer.MAX_TOKEN_LENGTH + 1), true,
+                word -> words.add(word.toString()));
+
+        assertEquals(List.of("spring", "бут", "x"), words);
+    }
+
+    @Test
+    public void countsWordFormsAcrossGrowth() {
+        WordCounter counter = new WordCounter();
+        for (int i = 0; i < 1000; i++) {
+            counter.add("слово" + (i % 300));
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        counter.forEach(counts::put);
+
+        assertEquals(300, counter.size());
+        assertEquals(300, counts.size());
+        assertEquals(4, (int) counts.get("слово0"));
+        assertEquals(3, (int) counts.get("слово299"));
+    }
+}
@@ -0,0 +1,130 @@
+package searchengine.services.search;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import searchengine.config.MorphologySettings;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchItem;
+import searchengine.services.index.IndexGeneration;
+import searchengine.services.morphology.MorphologyCache;
+import searchengine.services.statistics.SearchEngineMetrics;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SearchResultCacheTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IndexGeneration generation = new IndexGeneration();
+    private final SearchResultCache cache = new SearchResultCache(new SearchSettings(), generation,
+            new SearchEngineMetrics(registry, new MorphologyCache(null, null, new MorphologySettings())));
+    private final AtomicInteger rankings = new AtomicInteger();
+
+    private SearchResultCache.Ranking rank(int depth) {
+        rankings.incrementAndGet();
+        return new SearchResultCache.Ranking(List.of(Map.entry(1, 2f), Map.entry(2, 1f)), 2, depth);
+    }
+
+    @Test
+    public void sameLemmasInAnyOrderHitCache() {
+        cache.ranked(cache.query(new LinkedHashSet<>(List.of("кот", "дом")), null), 10, this::rank);
+        cache.ranked(cache.query(new LinkedHashSet<>(List.of("дом", "кот")), ""), 10, this::rank);
+        cache.ranked(cache.query(Set.of("дом", "кот"), "https://a.ru/"), 10, this::rank);
+
+        assertEquals(2, rankings.get());
+        assertEquals(1, registry.get("searchengine.search.cache.requests")
+                .tags("cache", "ranked", "result", "hit").functionCounter().count(), 0);
+    }
+
+    @Test
+    public void newGenerationMissesCache() {
+        cache.ranked(cache.query(Set.of("кот"), ""), 10, this::rank);
+        generation.next();
+        cache.ranked(cache.query(Set.of("кот"), ""), 10, this::rank);
+
+        assertEquals(2, rankings.get());
+    }
+
+    @Test
+    public void deeperPageReranksAtLeastTwiceAsDeep() {
+        SearchResultCache.Query query = cache.query(Set.of("кот"), "");
+        assertEquals(100, cache.ranked(query, 100, this::rank).depth());
+        assertEquals(200, cache.ranked(query, 150, this::rank).depth());
+        assertEquals(200, cache.ranked(query, 180, this::rank).depth());
+        assertEquals(500, cache.ranked(query, 500, this::rank).depth());
+
+        assertEquals(3, rankings.get());
+    }
+
+    @Test
+    public void concurrentSameQueryIsRankedOnce() throws Exception {
+        SearchResultCache.Query query = cache.query(Set.of("кот"), "");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SearchResultCache.Ranking> first = executor.submit(() -> cache.ranked(query, 10, depth -> {
+                started.countDown();
+                await(release);
+                return rank(depth);
+            }));
+            started.await();
+            Thread waiter = new Thread(() -> cache.ranked(query, 10, this::rank));
+            waiter.start();
+            release.countDown();
+            waiter.join();
+
+            assertEquals(2, first.get().total());
+            assertEquals(1, rankings.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedRankingIsNotCached() {
+        SearchResultCache.Query query = cache.query(Set.of("кот"), "");
+        IllegalStateException failure = assertThrows(IllegalStateException.class,
+                () -> cache.ranked(query, 10, depth -> {
+                    throw new IllegalStateException("база недоступна");
+                }));
+        assertEquals("база недоступна", failure.getMessage());
+
+        assertEquals(2, cache.ranked(query, 10, this::rank).total());
+        assertEquals(1, rankings.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void pagesOfOneQueryAreCachedSeparately() {
+        SearchResultCache.Query query = cache.query(Set.of("кот"), "");
+        AtomicInteger builds = new AtomicInteger();
+        cache.items(query, 0, 20, () -> List.of(new SearchItem()));
+        cache.items(query, 20, 20, () -> {
+            builds.incrementAndGet();
+            return List.of();
+        });
+        cache.items(query, 0, 20, () -> {
+            builds.incrementAndGet();
+            return List.of();
+        });
+
+        assertEquals(1, builds.get());
+    }
+}
@@ -0,0 +1,51 @@
+package searchengine.services.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TopPagesTest {
+
+    @Test
+    public void keepsBestPagesInRankOrder() {
+        TopPages top = new TopPages(3);
+        float[] scores = {1f, 5f, 3f, 5f, 0.5f, 4f, 3f};
+        for (int i = 0; i < scores.length; i++) {
+            top.offer(i + 1, scores[i]);
+        }
+
+        assertEquals(List.of(Map.entry(2, 5f), Map.entry(4, 5f), Map.entry(6, 4f)), top.drain());
+        assertEquals(0, top.size());
+    }
+
+    @Test
+    public void excludesOnlyPagesThatCannotEnter() {
+        TopPages top = new TopPages(2);
+        assertFalse(top.excludes(0, 1));
+        top.offer(10, 2f);
+        top.offer(20, 3f);
+
+        assertTrue(top.excludes(1.5f, 0));
+        assertFalse(top.excludes(2.5f, 100));
+        assertFalse(top.excludes(2f, 5));
+        assertTrue(top.excludes(2f, 11));
+    }
+
+    @Test
+    public void growsUpToCapacity() {
+        TopPages top = new TopPages(1000);
+        for (int i = 0; i < 5000; i++) {
+            top.offer(i, i % 1000);
+        }
+
+        List<Map.Entry<Integer, Float>> pages = top.drain();
+        assertEquals(1000, pages.size());
+        assertEquals(Map.entry(999, 999f), pages.get(0));
+        assertEquals(Map.entry(4800, 800f), pages.get(999));
+    }
+}
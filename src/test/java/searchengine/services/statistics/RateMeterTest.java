@@ -0,0 +1,24 @@
+package searchengine.services.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RateMeterTest {
+
+    @Test
+    public void averagesCompletedSecondsOfWindow() {
+        SiteCounters.RateMeter meter = new SiteCounters.RateMeter();
+        for (int i = 0; i < 18; i++) {
+            meter.mark(100);
+        }
+        for (int i = 0; i < 9; i++) {
+            meter.mark(105);
+        }
+        meter.mark(106);
+
+        assertEquals(3.0, meter.perSecond(106), 1e-9);
+        assertEquals(10.0 / 9, meter.perSecond(110), 1e-9);
+        assertEquals(0.0, meter.perSecond(200), 1e-9);
+    }
+}
@@ -0,0 +1,55 @@
+package searchengine.services.statistics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import searchengine.config.MorphologySettings;
+import searchengine.services.morphology.MorphologyCache;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SearchEngineMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SearchEngineMetrics metrics = new SearchEngineMetrics(registry,
+            new MorphologyCache(null, null, new MorphologySettings()));
+
+    @Test
+    public void countsFetchesByHostAndStatus() {
+        metrics.fetched("a.ru", 200, TimeUnit.MILLISECONDS.toNanos(30));
+        metrics.fetched("a.ru", 200, TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.fetched("a.ru", 404, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.fetched("b.ru", -1, TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(2, registry.get(SearchEngineMetrics.FETCH).tags("host", "a.ru", "status", "200").timer().count());
+        assertEquals(40, registry.get(SearchEngineMetrics.FETCH).tags("host", "a.ru", "status", "200").timer()
+                .totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get(SearchEngineMetrics.FETCH).tag("status", "404").timer().count());
+        assertEquals(1, registry.get(SearchEngineMetrics.FETCH).tags("host", "b.ru", "status", "error").timer().count());
+    }
+
+    @Test
+    public void queueDropsToZeroWhenCrawlEnds() {
+        metrics.queue("https://a.ru/", "frontier", () -> 42);
+        metrics.queue("https://b.ru/", "frontier", () -> 7);
+        assertEquals(42, registry.get(SearchEngineMetrics.QUEUE).tag("site", "https://a.ru/").gauge().value(), 0);
+
+        metrics.queuesClosed("https://a.ru/");
+        assertEquals(0, registry.get(SearchEngineMetrics.QUEUE).tag("site", "https://a.ru/").gauge().value(), 0);
+        assertEquals(7, registry.get(SearchEngineMetrics.QUEUE).tag("site", "https://b.ru/").gauge().value(), 0);
+
+        metrics.queue("https://a.ru/", "frontier", () -> 3);
+        assertEquals(3, registry.get(SearchEngineMetrics.QUEUE).tag("site", "https://a.ru/").gauge().value(), 0);
+    }
+
+    @Test
+    public void recordsFlushSizes() {
+        metrics.flushed(TimeUnit.MILLISECONDS.toNanos(100), 25, 10_000);
+        metrics.flushed(TimeUnit.MILLISECONDS.toNanos(50), 5, 2_000);
+
+        assertEquals(2, registry.get(SearchEngineMetrics.FLUSH).timer().count());
+        assertEquals(30, registry.get(SearchEngineMetrics.FLUSH_PAGES).summary().totalAmount(), 0);
+        assertEquals(12_000, registry.get(SearchEngineMetrics.FLUSH_ROWS).summary().totalAmount(), 0);
+        assertEquals(80_000, registry.get(SearchEngineMetrics.FLUSH_ROWS_RATE).gauge().value(), 0.001);
+    }
+}